@@ -0,0 +1,89 @@
+package org.ec.util;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernel of {@link ECMatchCost} that calculates the matrix with the
+ * incubator Vector API, using the widest SIMD registers of the machine.
+ * <p>
+ * Each lane does the same operations as the scalar loop, in the same order
+ * and without fused multiply-add, so the costs are exactly the same.  The
+ * last target hits that do not fill a whole vector are calculated by the
+ * scalar loop.
+ * <p>
+ * This class needs the module <code>jdk.incubator.vector</code>, so it is
+ * not compiled with the rest of the sources.  Use the
+ * <code>compile-vector</code> target, and run with
+ * <code>--add-modules jdk.incubator.vector</code>.  {@link ECMatchCost}
+ * loads it when it is available.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECMatchCost
+ */
+public final class ECMatchCostVector implements ECMatchCost.Kernel
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private static final int WARMUP = 10000;
+
+
+    /**
+     * Construct the kernel, and warm it up with a matrix wider than two
+     * vectors.  Else the JIT may compile the kernel when it has only seen
+     * rows shorter than a vector, and the vectors of that code are then
+     * allocated on the heap, which is slower than the scalar kernel.
+     */
+    public ECMatchCostVector()
+    {
+        int      n   = 2 * SPECIES.length() + 1;
+        double[] one = new double[n];
+        double[] out = new double[n * n];
+        Arrays.fill(one, 1);
+        for (int k = 0; k < WARMUP; k++)
+            compute(one, one, one, one, n, one, one, one, one, n, out);
+    }
+
+
+    public void compute(double[] si, double[] sj, double[] svi, double[] svj, int nRows,
+                        double[] ti, double[] tj, double[] tvi, double[] tvj, int nCols,
+                        double[] out)
+    {
+        int bound = SPECIES.loopBound(nCols);
+        for (int s = 0; s < nRows; s++) {
+            int    offset = s * nCols;
+            double fi     = si[s];
+            double fj     = sj[s];
+            double vi     = svi[s];
+            double vj     = svj[s];
+            DoubleVector vfi = DoubleVector.broadcast(SPECIES, fi);
+            DoubleVector vfj = DoubleVector.broadcast(SPECIES, fj);
+            DoubleVector vvi = DoubleVector.broadcast(SPECIES, vi);
+            DoubleVector vvj = DoubleVector.broadcast(SPECIES, vj);
+
+            int k = 0;
+            for (; k < bound; k += SPECIES.length()) {
+                DoubleVector di = vfi.sub(DoubleVector.fromArray(SPECIES, ti, k));
+                DoubleVector dj = vfj.sub(DoubleVector.fromArray(SPECIES, tj, k));
+                DoubleVector ci = di.mul(di).div(vvi.add(DoubleVector.fromArray(SPECIES, tvi, k)));
+                DoubleVector cj = dj.mul(dj).div(vvj.add(DoubleVector.fromArray(SPECIES, tvj, k)));
+                ci.add(cj).intoArray(out, offset + k);
+            }
+
+            // The last hits, that do not fill a vector
+            for (; k < nCols; k++) {
+                double di = fi - ti[k];
+                double dj = fj - tj[k];
+                out[offset + k] = di * di / (vi + tvi[k]) + dj * dj / (vj + tvj[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package org.ec.detector;
+
+/**
+ * The <code>ECConfig</code> class stores the control variables of the
+ * algorithm (the TCL variables of the original code).
+ * <p>
+ * A configuration can not be changed after it is built, so one object can
+ * be shared by any number of threads, and different workers in the same
+ * process can use different configurations.  The services receive it in
+ * their <code>configure</code> method and give it to the finders.  The
+ * default values are the ones in {@link ECGeneral}.
+ * <p>
+ * New configurations are created with a {@link Builder}, starting from the
+ * default values or from other configuration, or parsed from a list of TCL
+ * variables with {@link #parse}:
+ * <pre>
+ *     touch_id=1 ln_weights=false hit_threshold=0.02
+ * </pre>
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ */
+public final class ECConfig
+{
+    /** The configuration with the default values. */
+    public static final ECConfig DEFAULT = new Builder().build();
+
+    private final int     touchID;
+    private final boolean lnWeights;
+    private final boolean fastLnWeights;
+    private final double  stripThreshold;
+    private final double  peakThreshold;
+    private final double  hitThreshold;
+    private final int     maxECStrips;
+    private final int     maxPCALStrips;
+    private final double  ecMatch;
+    private final int     parallelStrips;
+
+
+    private ECConfig(Builder b)
+    {
+        this.touchID        = b.touchID;
+        this.lnWeights      = b.lnWeights;
+        this.fastLnWeights  = b.fastLnWeights;
+        this.stripThreshold = b.stripThreshold;
+        this.peakThreshold  = b.peakThreshold;
+        this.hitThreshold   = b.hitThreshold;
+        this.maxECStrips    = b.maxECStrips;
+        this.maxPCALStrips  = b.maxPCALStrips;
+        this.ecMatch        = b.ecMatch;
+        this.parallelStrips = b.parallelStrips;
+    }
+
+
+    /**
+     * Parse a configuration from a list of TCL variables.  Each variable is
+     * given as <code>name=value</code>, separated by spaces, commas,
+     * semicolons or new lines.  The variables not in the list have the
+     * default value.
+     *
+     * @param text  the list of variables
+     * @return      the configuration
+     * @throws IllegalArgumentException if a variable is unknown or its
+     *         value is not valid
+     */
+    public static ECConfig parse(String text)
+    {
+        Builder b = new Builder();
+        for (String item : text.trim().split("[\\s,;]+")) {
+            if (item.isEmpty())
+                continue;
+            int eq = item.indexOf('=');
+            if (eq < 0)
+                throw new IllegalArgumentException("Missing value of " + item);
+            b.set(item.substring(0, eq), item.substring(eq + 1));
+        }
+        return b.build();
+    }
+
+
+    /**
+     * Get the number of strips that can separate two strips of the same
+     * peak, or zero to split the peaks at the valleys of the energy.
+     *
+     * @return  the TCL variable <code>touch_id</code>
+     */
+    public int getTouchID()
+    {
+        return touchID;
+    }
+
+
+    /**
+     * Check if the centroid and moments of the peaks are calculated with
+     * logarithmic weights.
+     *
+     * @return  the TCL variable <code>ln_weights</code>
+     */
+    public boolean isLnWeights()
+    {
+        return lnWeights;
+    }
+
+
+    /**
+     * Check if the logarithmic weights are interpolated from a table
+     * instead of calculated with <code>Math.log</code>.
+     *
+     * @return  the variable <code>fast_ln_weights</code>
+     */
+    public boolean isFastLnWeights()
+    {
+        return fastLnWeights;
+    }
+
+
+    /**
+     * Get the minimum energy of the strips of a peak.
+     *
+     * @return  the TCL variable <code>strip_threshold</code>
+     */
+    public double getStripThreshold()
+    {
+        return stripThreshold;
+    }
+
+
+    /**
+     * Get the minimum energy of a peak.
+     *
+     * @return  the TCL variable <code>peak_threshold</code>
+     */
+    public double getPeakThreshold()
+    {
+        return peakThreshold;
+    }
+
+
+    /**
+     * Get the minimum energy of a hit.
+     *
+     * @return  the TCL variable <code>hit_threshold</code>
+     */
+    public double getHitThreshold()
+    {
+        return hitThreshold;
+    }
+
+
+    /**
+     * Get the number of strips of the views of the <em>COVER</em> layer.
+     *
+     * @return  the TCL variable <code>max_ec_strips</code>
+     */
+    public int getMaxECStrips()
+    {
+        return maxECStrips;
+    }
+
+
+    /**
+     * Get the number of strips of the views of the other layers.
+     *
+     * @return  the TCL variable <code>max_pcal_strips</code>
+     */
+    public int getMaxPCALStrips()
+    {
+        return maxPCALStrips;
+    }
+
+
+    /**
+     * Get the maximum <em>chi<sup>2</sup></em> to match an inner hit with a
+     * whole hit.
+     *
+     * @return  the TCL variable <code>ec_match</code>
+     */
+    public double getECMatch()
+    {
+        return ecMatch;
+    }
+
+
+    /**
+     * Get the number of fired strips of a sector above which the hits of
+     * its layers are found in parallel.
+     *
+     * @return  the variable <code>parallel_strips</code>
+     */
+    public int getParallelStrips()
+    {
+        return parallelStrips;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "touch_id="          + touchID
+             + " ln_weights="       + lnWeights
+             + " fast_ln_weights="  + fastLnWeights
+             + " strip_threshold="  + stripThreshold
+             + " peak_threshold="   + peakThreshold
+             + " hit_threshold="    + hitThreshold
+             + " max_ec_strips="    + maxECStrips
+             + " max_pcal_strips="  + maxPCALStrips
+             + " ec_match="         + ecMatch
+             + " parallel_strips="  + parallelStrips;
+    }
+
+
+    /**
+     * Builder of new configurations.
+     */
+    public static final class Builder
+    {
+        private int     touchID        = ECGeneral.TOUCH_ID;
+        private boolean lnWeights      = ECGeneral.LN_WEIGHTS;
+        private boolean fastLnWeights  = ECGeneral.FAST_LN_WEIGHTS;
+        private double  stripThreshold = ECGeneral.STRIP_THRESHOLD;
+        private double  peakThreshold  = ECGeneral.PEAK_THRESHOLD;
+        private double  hitThreshold   = ECGeneral.HIT_THRESHOLD;
+        private int     maxECStrips    = ECGeneral.MAX_EC_STRIPS;
+        private int     maxPCALStrips  = ECGeneral.MAX_PCAL_STRIPS;
+        private double  ecMatch        = ECGeneral.EC_MATCH;
+        private int     parallelStrips = ECGeneral.PARALLEL_STRIPS;
+
+
+        /**
+         * Construct a builder with the default values.
+         */
+        public Builder()
+        {
+        }
+
+
+        /**
+         * Construct a builder with the values of the given configuration.
+         *
+         * @param config  the configuration to copy
+         */
+        public Builder(ECConfig config)
+        {
+            touchID        = config.touchID;
+            lnWeights      = config.lnWeights;
+            fastLnWeights  = config.fastLnWeights;
+            stripThreshold = config.stripThreshold;
+            peakThreshold  = config.peakThreshold;
+            hitThreshold   = config.hitThreshold;
+            maxECStrips    = config.maxECStrips;
+            maxPCALStrips  = config.maxPCALStrips;
+            ecMatch        = config.ecMatch;
+            parallelStrips = config.parallelStrips;
+        }
+
+
+        /**
+         * Set a variable given by its TCL name.
+         *
+         * @param name   the name of the variable, like <code>touch_id</code>
+         * @param value  the value
+         * @return       this builder
+         * @throws IllegalArgumentException if the variable is unknown or the
+         *         value is not valid
+         */
+        public Builder set(String name, String value)
+        {
+            try {
+                String v = value.trim();
+                String n = name.trim().toLowerCase();
+                if      (n.equals("touch_id"))        setTouchID(Integer.parseInt(v));
+                else if (n.equals("ln_weights"))      setLnWeights(parseBoolean(v));
+                else if (n.equals("fast_ln_weights")) setFastLnWeights(parseBoolean(v));
+                else if (n.equals("strip_threshold")) setStripThreshold(Double.parseDouble(v));
+                else if (n.equals("peak_threshold"))  setPeakThreshold(Double.parseDouble(v));
+                else if (n.equals("hit_threshold"))   setHitThreshold(Double.parseDouble(v));
+                else if (n.equals("max_ec_strips"))   setMaxECStrips(Integer.parseInt(v));
+                else if (n.equals("max_pcal_strips")) setMaxPCALStrips(Integer.parseInt(v));
+                else if (n.equals("ec_match"))        setECMatch(Double.parseDouble(v));
+                else if (n.equals("parallel_strips")) setParallelStrips(Integer.parseInt(v));
+                else
+                    throw new IllegalArgumentException("Unknown variable " + name);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value of " + name + ": " + value, e);
+            }
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>touch_id</code>.
+         *
+         * @param touchID  the TCL variable <code>touch_id</code>
+         * @return         this builder
+         * @throws IllegalArgumentException if it is negative
+         */
+        public Builder setTouchID(int touchID)
+        {
+            if (touchID < 0)
+                throw new IllegalArgumentException("Bad touch_id: " + touchID);
+            this.touchID = touchID;
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>ln_weights</code>.
+         *
+         * @param lnWeights  the TCL variable <code>ln_weights</code>
+         * @return           this builder
+         */
+        public Builder setLnWeights(boolean lnWeights)
+        {
+            this.lnWeights = lnWeights;
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>fast_ln_weights</code>.
+         *
+         * @param fastLnWeights  the variable <code>fast_ln_weights</code>
+         * @return               this builder
+         */
+        public Builder setFastLnWeights(boolean fastLnWeights)
+        {
+            this.fastLnWeights = fastLnWeights;
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>strip_threshold</code>.
+         *
+         * @param stripThreshold  the TCL variable <code>strip_threshold</code>
+         * @return                this builder
+         */
+        public Builder setStripThreshold(double stripThreshold)
+        {
+            this.stripThreshold = stripThreshold;
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>peak_threshold</code>.
+         *
+         * @param peakThreshold  the TCL variable <code>peak_threshold</code>
+         * @return               this builder
+         */
+        public Builder setPeakThreshold(double peakThreshold)
+        {
+            this.peakThreshold = peakThreshold;
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>hit_threshold</code>.
+         *
+         * @param hitThreshold  the TCL variable <code>hit_threshold</code>
+         * @return              this builder
+         */
+        public Builder setHitThreshold(double hitThreshold)
+        {
+            this.hitThreshold = hitThreshold;
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>max_ec_strips</code>.
+         *
+         * @param maxECStrips  the TCL variable <code>max_ec_strips</code>
+         * @return             this builder
+         * @throws IllegalArgumentException if it is not between 1 and
+         *         {@link ECGeneral#MAX_STRIPS MAX_STRIPS}
+         */
+        public Builder setMaxECStrips(int maxECStrips)
+        {
+            this.maxECStrips = checkStrips(maxECStrips);
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>max_pcal_strips</code>.
+         *
+         * @param maxPCALStrips  the TCL variable <code>max_pcal_strips</code>
+         * @return               this builder
+         * @throws IllegalArgumentException if it is not between 1 and
+         *         {@link ECGeneral#MAX_STRIPS MAX_STRIPS}
+         */
+        public Builder setMaxPCALStrips(int maxPCALStrips)
+        {
+            this.maxPCALStrips = checkStrips(maxPCALStrips);
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>ec_match</code>.
+         *
+         * @param ecMatch  the TCL variable <code>ec_match</code>
+         * @return         this builder
+         */
+        public Builder setECMatch(double ecMatch)
+        {
+            this.ecMatch = ecMatch;
+            return this;
+        }
+
+
+        /**
+         * Set the variable <code>parallel_strips</code>.  Zero finds the
+         * hits of the layers of all the sectors in parallel, and
+         * <code>Integer.MAX_VALUE</code> never does it.  The default has
+         * not been measured on several processors yet.
+         *
+         * @param parallelStrips  the variable <code>parallel_strips</code>
+         * @return                this builder
+         * @throws IllegalArgumentException if it is negative
+         */
+        public Builder setParallelStrips(int parallelStrips)
+        {
+            if (parallelStrips < 0)
+                throw new IllegalArgumentException("Bad parallel_strips: " + parallelStrips);
+            this.parallelStrips = parallelStrips;
+            return this;
+        }
+
+
+        /**
+         * Create the configuration with the current values.
+         *
+         * @return  the new configuration
+         */
+        public ECConfig build()
+        {
+            return new ECConfig(this);
+        }
+
+
+        private static boolean parseBoolean(String value)
+        {
+            if (value.equalsIgnoreCase("true")  || value.equals("1")) return true;
+            if (value.equalsIgnoreCase("false") || value.equals("0")) return false;
+            throw new NumberFormatException(value);
+        }
+
+
+        private static int checkStrips(int maxStrips)
+        {
+            if (maxStrips < 1 || maxStrips > ECGeneral.MAX_STRIPS)
+                throw new IllegalArgumentException("Bad number of strips: " + maxStrips);
+            return maxStrips;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package org.ec.detector;
+
+/**
+ * The <code>ECEventStore</code> class holds the strip data of one event in
+ * flat primitive arrays.
+ * <p>
+ * Instead of keeping one object for each strip, the data is stored in
+ * parallel arrays (structure of arrays), indexed by a <em>slot</em>.  Each
+ * view of each layer of each sector owns a fixed range of
+ * {@link ECGeneral#MAX_STRIPS MAX_STRIPS} consecutive slots, so the strips
+ * of one view are contiguous in memory.  Inside that range each strip has
+ * the slot given by its ID, so adding a strip does not need any search or
+ * sorting, and the strips can be walked in ID order.  Each view also keeps a
+ * compact list with the IDs of its fired strips, in the order they were
+ * added.
+ * <p>
+ * The {@link ECSector}, {@link ECLayer}, {@link ECView} and {@link ECStrip}
+ * classes are views on top of this store: a sector created with a store
+ * keeps all its strip data here, so the same store can be shared by the six
+ * sectors of one event, and the algorithms can iterate directly over the
+ * arrays.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECView
+ * @see         ECStrip
+ */
+public final class ECEventStore
+{
+    public final static int N_LAYERS = ECLayerName.values().length;
+    public final static int N_VIEWS  = ECViewLabel.values().length;
+
+    private final int firstSector;
+    private final int nSectors;
+    private final int capacity;
+
+    private final int[]     nStrips;
+    private final int[]     fired;
+    private final boolean[] isFired;
+
+    private final int[]    stripID;
+    private final double[] energy;
+    private final double[] time;
+    private final double[] rawAdc;
+    private final double[] peakEnergy;
+    private final double[] peakEfr;
+
+
+    /**
+     * Construct a store for the data of all the sectors of one event.
+     */
+    public ECEventStore()
+    {
+        this(1, ECGeneral.MAX_SECTORS, ECGeneral.MAX_STRIPS);
+    }
+
+
+    /**
+     * Construct a store for the data of one single sector.
+     *
+     * @param sectorID  the ID of the sector (1 to 6)
+     */
+    public ECEventStore(int sectorID)
+    {
+        this(sectorID, 1, ECGeneral.MAX_STRIPS);
+    }
+
+
+    /**
+     * Construct a store with the given number of views and strips per view.
+     * Used for views and strips not attached to any sector.
+     *
+     * @param nViews    the number of views
+     * @param capacity  the maximum number of strips in each view
+     */
+    ECEventStore(int nViews, int capacity)
+    {
+        this(1, 1, nViews, capacity);
+    }
+
+
+    private ECEventStore(int firstSector, int nSectors, int capacity)
+    {
+        this(firstSector, nSectors, nSectors * N_LAYERS * N_VIEWS, capacity);
+    }
+
+
+    private ECEventStore(int firstSector, int nSectors, int nViews, int capacity)
+    {
+        this.firstSector = firstSector;
+        this.nSectors    = nSectors;
+        this.capacity    = capacity;
+
+        this.nStrips     = new int[nViews];
+        this.fired       = new int[nViews * capacity];
+        this.isFired     = new boolean[nViews * capacity];
+        this.stripID     = new int[nViews * capacity];
+        this.energy      = new double[nViews * capacity];
+        this.time        = new double[nViews * capacity];
+        this.rawAdc      = new double[nViews * capacity];
+        this.peakEnergy  = new double[nViews * capacity];
+        this.peakEfr     = new double[nViews * capacity];
+    }
+
+
+    /**
+     * Get the index of the given view in the store.  The index is used by
+     * all the other methods to access the strips of the view.
+     *
+     * @param sectorID  the ID of the sector (1 to 6)
+     * @param layer     the name of the layer
+     * @param view      the label of the view
+     * @return          the index of the view
+     * @throws IllegalArgumentException if the sector is not in the store
+     */
+    public int viewIndex(int sectorID, ECLayerName layer, ECViewLabel view)
+    {
+        int s = sectorID - firstSector;
+        if (s < 0 || s >= nSectors)
+            throw new IllegalArgumentException("Sector " + sectorID + " is not in the store");
+        return (s * N_LAYERS + layer.ordinal()) * N_VIEWS + view.ordinal();
+    }
+
+
+    /**
+     * Get the maximum number of strips that can be stored in each view.
+     *
+     * @return  the capacity of the views
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+
+    /**
+     * Add a new strip to the given view.  The data of the strip is
+     * initialized to zero.  If the strip was already added, its slot is
+     * returned and its data is kept.
+     *
+     * @param view  the index of the view
+     * @param id    the identification number of the strip
+     * @return      the slot of the strip, or <code>-1</code> if the ID is
+     *              not valid for the view
+     */
+    public int addStrip(int view, int id)
+    {
+        if (id < 0 || id >= capacity)
+            return -1;
+
+        int slot = view * capacity + id;
+        if (isFired[slot])
+            return slot;
+
+        fired[view * capacity + nStrips[view]++] = id;
+        isFired[slot] = true;
+
+        stripID[slot]    = id;
+        energy[slot]     = 0.0;
+        time[slot]       = 0.0;
+        rawAdc[slot]     = 0.0;
+        peakEnergy[slot] = 0.0;
+        peakEfr[slot]    = 0.0;
+
+        return slot;
+    }
+
+
+    /**
+     * Use the first slot of the store for a strip that does not belong to
+     * any view.  The data of the strip is initialized to zero.
+     *
+     * @param id  the identification number of the strip
+     * @return    the slot of the strip
+     */
+    int addDetachedStrip(int id)
+    {
+        stripID[0]    = id;
+        energy[0]     = 0.0;
+        time[0]       = 0.0;
+        rawAdc[0]     = 0.0;
+        peakEnergy[0] = 0.0;
+        peakEfr[0]    = 0.0;
+
+        return 0;
+    }
+
+
+    /**
+     * Get the number of strips with information in the given view.
+     *
+     * @param view  the index of the view
+     * @return      the number of strips
+     */
+    public int getNStrips(int view)
+    {
+        return nStrips[view];
+    }
+
+
+    /**
+     * Get the slot of the <em>nth</em> strip added to the given view.
+     *
+     * @param view  the index of the view
+     * @param n     the position of the strip in the list of fired strips
+     * @return      the slot of the strip
+     */
+    public int getSlot(int view, int n)
+    {
+        return view * capacity + fired[view * capacity + n];
+    }
+
+
+    /**
+     * Get the slot of the strip with the given ID in the view.  The strip
+     * may not have been fired.
+     *
+     * @param view  the index of the view
+     * @param id    the identification number of the strip
+     * @return      the slot of the strip
+     * @see         #isFired
+     */
+    public int getSlotByID(int view, int id)
+    {
+        return view * capacity + id;
+    }
+
+
+    /**
+     * Check if the strip in the given slot has been added to its view.
+     *
+     * @param slot  the slot of the strip
+     * @return      true if the strip has information, false if not
+     */
+    public boolean isFired(int slot)
+    {
+        return isFired[slot];
+    }
+
+
+    /**
+     * Remove all the strips of the given view.  Only the fired strips are
+     * visited.
+     *
+     * @param view  the index of the view
+     */
+    public void clear(int view)
+    {
+        int base = view * capacity;
+        for (int n = 0; n < nStrips[view]; n++)
+            isFired[base + fired[base + n]] = false;
+        nStrips[view] = 0;
+    }
+
+
+    /**
+     * Remove all the strips of all the views in the store.
+     */
+    public void clear()
+    {
+        for (int view = 0; view < nStrips.length; view++)
+            clear(view);
+    }
+
+
+    /**
+     * Get the identification number of the strip in the given slot.
+     *
+     * @param slot  the slot of the strip
+     * @return      the ID of the strip
+     */
+    public int getStripID(int slot)
+    {
+        return stripID[slot];
+    }
+
+
+    /**
+     * Get the calculated energy of the strip in the given slot.
+     *
+     * @param slot  the slot of the strip
+     * @return      the energy
+     */
+    public double getEnergy(int slot)
+    {
+        return energy[slot];
+    }
+
+
+    /**
+     * Set the calculated energy of the strip in the given slot.
+     *
+     * @param slot    the slot of the strip
+     * @param energy  the energy to set
+     */
+    public void setEnergy(int slot, double energy)
+    {
+        this.energy[slot] = energy;
+    }
+
+
+    /**
+     * Get the time of the strip in the given slot.
+     *
+     * @param slot  the slot of the strip
+     * @return      the time
+     */
+    public double getTime(int slot)
+    {
+        return time[slot];
+    }
+
+
+    /**
+     * Set the time of the strip in the given slot.
+     *
+     * @param slot  the slot of the strip
+     * @param time  the time to set
+     */
+    public void setTime(int slot, double time)
+    {
+        this.time[slot] = time;
+    }
+
+
+    /**
+     * Get the raw ADC of the strip in the given slot.
+     *
+     * @param slot  the slot of the strip
+     * @return      the raw ADC
+     */
+    public double getRawAdc(int slot)
+    {
+        return rawAdc[slot];
+    }
+
+
+    /**
+     * Set the raw ADC of the strip in the given slot.
+     *
+     * @param slot    the slot of the strip
+     * @param rawAdc  the raw ADC to set
+     */
+    public void setRawAdc(int slot, double rawAdc)
+    {
+        this.rawAdc[slot] = rawAdc;
+    }
+
+
+    /**
+     * Get the peak energy of the strip in the given slot.
+     *
+     * @param slot  the slot of the strip
+     * @return      the peak energy
+     */
+    public double getPeakEnergy(int slot)
+    {
+        return peakEnergy[slot];
+    }
+
+
+    /**
+     * Set the peak energy of the strip in the given slot.
+     *
+     * @param slot    the slot of the strip
+     * @param energy  the peak energy to set
+     */
+    public void setPeakEnergy(int slot, double energy)
+    {
+        this.peakEnergy[slot] = energy;
+    }
+
+
+    /**
+     * Get the peak energy fraction of the strip in the given slot.
+     *
+     * @param slot  the slot of the strip
+     * @return      the peak energy fraction
+     */
+    public double getPeakEfr(int slot)
+    {
+        return peakEfr[slot];
+    }
+
+
+    /**
+     * Set the peak energy fraction of the strip in the given slot.
+     *
+     * @param slot     the slot of the strip
+     * @param peakEfr  the peak energy fraction to set
+     */
+    public void setPeakEfr(int slot, double peakEfr)
+    {
+        this.peakEfr[slot] = peakEfr;
+    }
+}
@@ -30,13 +30,15 @@ public final class ECGeneral
     public final static double  DEFAULT_TRMS           =      1.0;
     public final static double  DEFAULT_ATTEN          =    376.0;
 
-    // Control
-    public static int           TOUCH_ID               =      0;
-    public static boolean       LN_WEIGHTS             =      true;
-    public static double        STRIP_THRESHOLD        =      0.001;
-    public static double        PEAK_THRESHOLD         =      0.003;
-    public static double        HIT_THRESHOLD          =      0.010;
-    public static int           MAX_EC_STRIPS          =     36;
-    public static int           MAX_PCAL_STRIPS        =    108;
-    public static double        EC_MATCH               =      3;
+    // Control: default values of ECConfig
+    public final static int     TOUCH_ID               =      0;
+    public final static boolean LN_WEIGHTS             =      true;
+    public final static boolean FAST_LN_WEIGHTS        =      false;
+    public final static double  STRIP_THRESHOLD        =      0.001;
+    public final static double  PEAK_THRESHOLD         =      0.003;
+    public final static double  HIT_THRESHOLD          =      0.010;
+    public final static int     MAX_EC_STRIPS          =     36;
+    public final static int     MAX_PCAL_STRIPS        =    108;
+    public final static double  EC_MATCH               =      3;
+    public final static int     PARALLEL_STRIPS        =    200;
 }
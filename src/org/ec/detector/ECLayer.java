@@ -1,10 +1,11 @@
 package org.ec.detector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.TreeMap;
+import java.util.List;
 
 import org.ec.fit.ECFitHit;
 import org.ec.fit.ECFitPeak;
@@ -35,8 +36,10 @@ public class ECLayer
     private String      key;
     private ECLayerName name;
 
-    private TreeMap<ECViewLabel, ECView> viewList;
+    private ECView[]     views;
+    private List<ECView> viewList;
     private ArrayList<ECFitHit> hitList;
+    private double[]            hitKeys;
 
     private double energy;
 
@@ -47,6 +50,8 @@ public class ECLayer
 
     private int    maxStrips;
 
+    private ECLayerGeometry geometry;
+
 
     /**
      * Construct an object representing the EC layer of the given name.  This
@@ -61,19 +66,39 @@ public class ECLayer
      * @see             ECFitHit
      */
     public ECLayer(ECLayerName name, int sectorID)
+    {
+        this(name, sectorID, new ECEventStore(sectorID));
+    }
+
+
+    /**
+     * Construct an object representing the EC layer of the given name, with
+     * the strip data of its three views kept in the given store.
+     *
+     * @param name      the name identifying the layer
+     * @param sectorID  the ID of the sector that the layer belongs
+     * @param store     the store with the strip data
+     * @see             ECEventStore
+     */
+    public ECLayer(ECLayerName name, int sectorID, ECEventStore store)
     {
         this.name   = name;
         this.key    = "S" + sectorID + "." + name;
 
         this.energy = 0.0;
 
-        // Create the list of views and hits
-        viewList = new TreeMap<ECViewLabel, ECView>();
-        hitList  = new ArrayList<ECFitHit>();
+        // Create the list of views, indexed by the ordinal of the label,
+        // and the list of hits
+        views   = new ECView[ECViewLabel.values().length];
+        hitList = new ArrayList<ECFitHit>();
+        hitKeys = new double[ECGeneral.MAX_HITS];
 
         for (ECViewLabel label : ECViewLabel.values()) {
-            viewList.put(label, new ECView(label, this.key));
+            int index = store.viewIndex(sectorID, name, label);
+            views[label.ordinal()] = new ECView(label, this.key, store, index);
+            views[label.ordinal()].setOwner(this);
         }
+        viewList = Collections.unmodifiableList(Arrays.asList(views));
     }
 
 
@@ -85,7 +110,7 @@ public class ECLayer
      */
     public Collection<ECView> getViewList()
     {
-        return viewList.values();
+        return viewList;
     }
 
 
@@ -98,7 +123,7 @@ public class ECLayer
      */
     public ECView getView(ECViewLabel label)
     {
-        return viewList.get(label);
+        return views[label.ordinal()];
     }
 
 
@@ -116,8 +141,8 @@ public class ECLayer
     /**
      * Create a new {@link ECFitHit hit} object.  Each hit is identified by a
      * triplet of peaks, one for each axis.  Set the right correlative ID
-     * number for it.  The created hit is returned, so it can be used and more
-     * of its properties can be set.
+     * number for it, and add it to the list of hits.  The created hit is
+     * returned, so it can be used and more of its properties can be set.
      *
      * @param u the peak related to the new hit in the U axis
      * @param v the peak related to the new hit in the V axis
@@ -129,6 +154,7 @@ public class ECLayer
     {
         int id = hitList.size() + 1;
         ECFitHit h = new ECFitHit(id, u, v, w, this);
+        hitList.add(h);
         return h;
     }
 
@@ -156,7 +182,7 @@ public class ECLayer
     public Collection<ECFitHit> getHitList(int index)
     {
         int n = hitList.size();
-        Collection<ECFitHit> sublist = hitList.subList(index, n + 1);
+        Collection<ECFitHit> sublist = hitList.subList(index, n);
         return Collections.unmodifiableCollection(sublist);
     }
 
@@ -172,6 +198,71 @@ public class ECLayer
     }
 
 
+    /**
+     * Remove the given hit from the list of hits of the layer.  The hits
+     * after it get a new correlative ID number, so the IDs are still the
+     * positions of the hits in the list.
+     *
+     * @param hit  the hit to be removed
+     */
+    public void removeHit(ECFitHit hit)
+    {
+        int n = hit.getID() - 1;
+        if (n < 0 || n >= hitList.size() || hitList.get(n) != hit) {
+            n = hitList.indexOf(hit);
+            if (n < 0) return;
+        }
+
+        hitList.remove(n);
+        for (int i = n; i < hitList.size(); i++)
+            hitList.get(i).setID(i + 1);
+    }
+
+
+    /**
+     * Remove the hits with energy below the threshold and sort the rest by
+     * decreasing energy.  The result is the same as sorting the full list
+     * and cutting it at the first hit below the threshold, but only the
+     * remaining hits are sorted, comparing their energies directly.  Hits
+     * with equal energy keep their order.
+     *
+     * @param threshold  the minimum energy of the hits
+     */
+    public void selectHits(double threshold)
+    {
+        int size = hitList.size();
+        if (hitKeys.length < size)
+            hitKeys = new double[size];
+
+        // Keep the hits above the threshold at the front of the list
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            ECFitHit h = hitList.get(i);
+            double   e = h.getEnergy();
+            if (!(e < threshold)) {
+                hitList.set(n, h);
+                hitKeys[n] = e;
+                n++;
+            }
+        }
+        resizeHitList(n);
+
+        // Insertion sort, there are only a few hits
+        for (int i = 1; i < n; i++) {
+            ECFitHit h = hitList.get(i);
+            double   e = hitKeys[i];
+            int j = i;
+            while (j > 0 && hitKeys[j - 1] < e) {
+                hitList.set(j, hitList.get(j - 1));
+                hitKeys[j] = hitKeys[j - 1];
+                j--;
+            }
+            hitList.set(j, h);
+            hitKeys[j] = e;
+        }
+    }
+
+
     /**
      * Reset the number of found hits in the layer to zero.
      */
@@ -181,6 +272,20 @@ public class ECLayer
     }
 
 
+    /**
+     * Clear the event data of the layer and its views: the strips, peaks and
+     * hits, and the total energy.  The geometry is kept, so the layer can be
+     * reused for a new event.
+     */
+    public void reset()
+    {
+        for (ECView view : views)
+            view.reset();
+        hitList.clear();
+        energy = 0.0;
+    }
+
+
     /**
      * Resize the list of hits to the given size.  The list keeps the elements
      * with index between <code>0</code> and <code>size - 1</code>.
@@ -189,7 +294,8 @@ public class ECLayer
      */
     public void resizeHitList(int size)
     {
-        hitList = (ArrayList<ECFitHit>) hitList.subList(0, size + 1);
+        for (int i = hitList.size() - 1; i >= size; i--)
+            hitList.remove(i);
     }
 
 
@@ -201,7 +307,36 @@ public class ECLayer
      */
     public double getEdgeL(ECViewLabel view)
     {
-        return viewList.get(view).getLength();
+        return views[view.ordinal()].getLength();
+    }
+
+
+    /**
+     * Get an immutable snapshot of the geometry of the layer, with the
+     * constants derived from it already calculated.  The snapshot is created
+     * again only if the geometry of the layer or the length of one of its
+     * views have changed.
+     *
+     * @return  the geometry of the layer
+     * @see     ECLayerGeometry
+     */
+    public ECLayerGeometry getGeometry()
+    {
+        ECLayerGeometry g = geometry;
+        if (g == null) {
+            g = new ECLayerGeometry(this);
+            geometry = g;
+        }
+        return g;
+    }
+
+
+    /**
+     * Discard the snapshot of the geometry of the layer.
+     */
+    void invalidateGeometry()
+    {
+        geometry = null;
     }
 
 
@@ -234,6 +369,7 @@ public class ECLayer
      */
     public void setDepth(double depth)
     {
+        if (this.depth != depth) geometry = null;
         this.depth = depth;
     }
 
@@ -254,6 +390,7 @@ public class ECLayer
      */
     public void setH(double h)
     {
+        if (H != h) geometry = null;
         H = h;
     }
 
@@ -276,6 +413,7 @@ public class ECLayer
      */
     public void setH1(double h1)
     {
+        if (H1 != h1) geometry = null;
         H1 = h1;
     }
 
@@ -298,6 +436,7 @@ public class ECLayer
      */
     public void setH2(double h2)
     {
+        if (H2 != h2) geometry = null;
         H2 = h2;
     }
 
@@ -321,6 +460,7 @@ public class ECLayer
      */
     public void setMaxStrips(int maxStrips)
     {
+        if (this.maxStrips != maxStrips) geometry = null;
         this.maxStrips = maxStrips;
     }
 
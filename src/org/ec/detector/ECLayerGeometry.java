@@ -0,0 +1,204 @@
+package org.ec.detector;
+
+/**
+ * The <code>ECLayerGeometry</code> class is an immutable snapshot of the
+ * geometry of one {@link ECLayer layer}.
+ * <p>
+ * Besides the edge lengths and the <code>H</code> values of the layer, it
+ * stores the derived constants used for every combination of peaks, like the
+ * inverse of the edge lengths, the height of the triangle and the strip
+ * width of each view, so they are not calculated again by the algorithm.
+ * <p>
+ * The snapshot is obtained with {@link ECLayer#getGeometry}, that creates it
+ * again only after the geometry of the layer has changed.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ */
+public final class ECLayerGeometry
+{
+    private final double[] edgeL;
+    private final double[] invEdgeL;
+    private final double[] stripWidth;
+
+    private final double   height;
+    private final double   invHeight;
+    private final double   h1OverHeight;
+
+    private final double   H;
+    private final double   H1;
+    private final double   H2;
+    private final double   depth;
+
+    private final int      maxStrips;
+
+
+    /**
+     * Create a snapshot of the current geometry of the layer.
+     *
+     * @param layer  the layer
+     */
+    ECLayerGeometry(ECLayer layer)
+    {
+        int nViews = ECViewLabel.values().length;
+
+        edgeL      = new double[nViews];
+        invEdgeL   = new double[nViews];
+        stripWidth = new double[nViews];
+
+        maxStrips  = layer.getMaxStrips();
+
+        for (ECViewLabel label : ECViewLabel.values()) {
+            int    n = label.ordinal();
+            double l = layer.getView(label).getLength();
+            edgeL[n]      = l;
+            invEdgeL[n]   = 1.0 / l;
+            stripWidth[n] = l / maxStrips;
+        }
+
+        double lu = edgeL[ECViewLabel.U.ordinal()];
+        double lv = edgeL[ECViewLabel.V.ordinal()];
+
+        H     = layer.getH();
+        H1    = layer.getH1();
+        H2    = layer.getH2();
+        depth = layer.getDepth();
+
+        height       = Math.sqrt(lu * lu - lv * lv / 4);
+        invHeight    = 1.0 / height;
+        h1OverHeight = H1 / height;
+    }
+
+
+    /**
+     * Get the length of a side.
+     *
+     * @param view  the desired side
+     * @return      the length of the side
+     */
+    public double getEdgeL(ECViewLabel view)
+    {
+        return edgeL[view.ordinal()];
+    }
+
+
+    /**
+     * Get the inverse of the length of a side.
+     *
+     * @param view  the desired side
+     * @return      one over the length of the side
+     */
+    public double getInvEdgeL(ECViewLabel view)
+    {
+        return invEdgeL[view.ordinal()];
+    }
+
+
+    /**
+     * Get the width of the strips of a view, using the maximum number of
+     * strips of the layer.
+     *
+     * @param view  the desired view
+     * @return      the width of a strip
+     */
+    public double getStripWidth(ECViewLabel view)
+    {
+        return stripWidth[view.ordinal()];
+    }
+
+
+    /**
+     * Get the height of the triangle of the layer, calculated from the
+     * lengths of the U and V sides.
+     *
+     * @return  the height
+     */
+    public double getHeight()
+    {
+        return height;
+    }
+
+
+    /**
+     * Get the inverse of the height of the triangle of the layer.
+     *
+     * @return  one over the height
+     * @see     #getHeight
+     */
+    public double getInvHeight()
+    {
+        return invHeight;
+    }
+
+
+    /**
+     * Get the ratio between <code>H1</code> and the height of the triangle.
+     *
+     * @return  the ratio
+     * @see     #getHeight
+     */
+    public double getH1OverHeight()
+    {
+        return h1OverHeight;
+    }
+
+
+    /**
+     * Get the <code>H</code> value of the layer.
+     *
+     * @return  the h
+     */
+    public double getH()
+    {
+        return H;
+    }
+
+
+    /**
+     * Get the <code>H1</code> value of the layer.
+     *
+     * @return  the h1
+     */
+    public double getH1()
+    {
+        return H1;
+    }
+
+
+    /**
+     * Get the <code>H2</code> value of the layer.
+     *
+     * @return  the h2
+     */
+    public double getH2()
+    {
+        return H2;
+    }
+
+
+    /**
+     * Get the depth of the layer.
+     *
+     * @return  the depth
+     */
+    public double getDepth()
+    {
+        return depth;
+    }
+
+
+    /**
+     * Get the maximum number of strips of the layer.
+     *
+     * @return  the maximum number of strips
+     */
+    public int getMaxStrips()
+    {
+        return maxStrips;
+    }
+}
@@ -1,8 +1,12 @@
 package org.ec.detector;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.TreeMap;
+import java.util.List;
+
+import org.ec.util.ECSectorTransform;
 
 
 /**
@@ -19,6 +23,9 @@ import java.util.TreeMap;
  * list of layers, or you can get the data of one specific layer by giving its
  * name.
  * <p>
+ * The strip data of all the layers is kept in an {@link ECEventStore}, that
+ * can be shared by all the sectors of one event.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -30,12 +37,15 @@ import java.util.TreeMap;
 public class ECSector
 {
     private int ID;
-    private TreeMap<ECLayerName, ECLayer> layerList;
+    private ECEventStore store;
+    private ECLayer[]     layers;
+    private List<ECLayer> layerList;
 
     private double phi;
     private HashMap<String, Double> origins;
+    private ECSectorTransform transform;
 
-    private TreeMap<ECLayerName, TreeMap<ECLayerName, Integer>> nmatch;
+    private int[][] nmatch;
 
     /**
      * Construct an object representing the EC sector with the given ID.
@@ -46,8 +56,24 @@ public class ECSector
      */
     public ECSector(int id)
     {
-        this.ID  = id;
-        this.phi = 0;
+        this(id, new ECEventStore(id));
+    }
+
+
+    /**
+     * Construct an object representing the EC sector with the given ID, with
+     * its strip data kept in the given store.  Initialize all the properties
+     * to zero and create the list of the four layers on the sector.
+     *
+     * @param id     the number of the sector (1 to 6)
+     * @param store  the store with the strip data of the event
+     * @see          ECEventStore
+     */
+    public ECSector(int id, ECEventStore store)
+    {
+        this.ID    = id;
+        this.store = store;
+        this.phi   = 0;
 
         // Create the hash for the local coordinate system
         this.origins   = new HashMap<String, Double>();
@@ -56,19 +82,16 @@ public class ECSector
         origins.put("y", 0.0);
         origins.put("z", 0.0);
 
-        // Create the layer list
-        this.layerList = new TreeMap<ECLayerName, ECLayer>();
+        updateTransform();
+
+        // Create the layer list, indexed by the ordinal of the layer name
+        this.layers = new ECLayer[ECLayerName.values().length];
         for (ECLayerName name : ECLayerName.values()) {
-            layerList.put(name, new ECLayer(name, id));
+            layers[name.ordinal()] = new ECLayer(name, id, store);
         }
+        this.layerList = Collections.unmodifiableList(Arrays.asList(layers));
 
-        this.nmatch = new TreeMap<ECLayerName, TreeMap<ECLayerName,Integer>>();
-        for (ECLayerName n1 : ECLayerName.values()) {
-            TreeMap<ECLayerName, Integer> secondKey = new TreeMap<ECLayerName, Integer>();
-            nmatch.put(n1, secondKey);
-            for (ECLayerName n2 : ECLayerName.values())
-                if (n1 != n2) nmatch.get(n1).put(n2, 0);
-        }
+        this.nmatch = new int[layers.length][layers.length];
     }
 
 
@@ -80,7 +103,7 @@ public class ECSector
      */
     public Collection<ECLayer> getLayerList()
     {
-        return layerList.values();
+        return layerList;
     }
 
 
@@ -93,7 +116,7 @@ public class ECSector
      */
     public ECLayer getLayer(ECLayerName name)
     {
-        return layerList.get(name);
+        return layers[name.ordinal()];
     }
 
 
@@ -105,6 +128,7 @@ public class ECSector
     public void setPhi(double phi)
     {
         this.phi = phi;
+        updateTransform();
     }
 
 
@@ -149,8 +173,49 @@ public class ECSector
      */
     public void setOrigins(String axis, double position)
     {
-        if (origins.containsKey(axis))
+        if (origins.containsKey(axis)) {
             origins.put(axis, position);
+            updateTransform();
+        }
+    }
+
+
+    /**
+     * Get the transformation from the local to the CLAS coordinate system
+     * of the sector.  It is built again when the phi angle or the origins of
+     * the sector are set, so it is always the one of the current values.
+     *
+     * @return  the transformation of the sector
+     */
+    public ECSectorTransform getTransform()
+    {
+        return transform;
+    }
+
+
+    private void updateTransform()
+    {
+        transform = new ECSectorTransform(phi, origins.get("x"),
+                                               origins.get("y"),
+                                               origins.get("z"));
+    }
+
+
+    /**
+     * Clear the event data of the sector: the strips, peaks and hits of all
+     * the layers, and the number of matches between layers.  All the
+     * objects and arrays of the sector, the calibration data and the
+     * geometry are kept, so the sector can be reused for a new event without
+     * allocating memory.
+     *
+     * @see ECSectorPool
+     */
+    public void reset()
+    {
+        for (ECLayer layer : layers)
+            layer.reset();
+        for (int[] row : nmatch)
+            Arrays.fill(row, 0);
     }
 
 
@@ -164,7 +229,7 @@ public class ECSector
      */
     public int getNmatch(ECLayerName l1, ECLayerName l2)
     {
-        return nmatch.get(l1).get(l2);
+        return nmatch[l1.ordinal()][l2.ordinal()];
     }
 
 
@@ -176,8 +241,7 @@ public class ECSector
      */
     public void addMatch(ECLayer l1, ECLayer l2)
     {
-        int n = nmatch.get(l1.getName()).get(l2.getName()) - 1;
-        nmatch.get(l1.getName()).put(l2.getName(), n);
+        nmatch[l1.getName().ordinal()][l2.getName().ordinal()]++;
     }
 
 
@@ -189,8 +253,7 @@ public class ECSector
      */
     public void substractMatch(ECLayer l1, ECLayer l2)
     {
-        int n = nmatch.get(l1.getName()).get(l2.getName()) - 1;
-        nmatch.get(l1.getName()).put(l2.getName(), n);
+        nmatch[l1.getName().ordinal()][l2.getName().ordinal()]--;
     }
 
 
@@ -203,4 +266,15 @@ public class ECSector
     {
         return ID;
     }
+
+
+    /**
+     * Get the store where the strip data of the sector is kept.
+     *
+     * @return  the store object
+     */
+    public ECEventStore getStore()
+    {
+        return store;
+    }
 }
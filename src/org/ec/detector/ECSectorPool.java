@@ -0,0 +1,104 @@
+package org.ec.detector;
+
+import java.util.ArrayDeque;
+
+
+/**
+ * The <code>ECSectorPool</code> class keeps the sector objects of finished
+ * events to reuse them for new events.
+ * <p>
+ * Creating the sectors of one event allocates the layers, the views, the
+ * calibration arrays of each view and the store with the strip data.  The
+ * pool keeps that structure: each entry is an {@link ECEventStore} with the
+ * six sectors on top of it, and when it is acquired again all the sectors
+ * are {@link ECSector#reset reset}.  A long-running orchestrator reaches a
+ * steady state where new events do not allocate the detector structure.
+ * <p>
+ * The new sectors created by the pool have no geometry or calibration data,
+ * so the caller needs to set it when it acquires an event for the first
+ * time.  The pool can be used from several threads.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECSector
+ */
+public class ECSectorPool
+{
+    private final ArrayDeque<ECSector[]> free;
+    private final int                    maxSize;
+
+
+    /**
+     * Construct an empty pool that keeps at most <code>maxSize</code>
+     * events.  Events released when the pool is full are discarded.
+     *
+     * @param maxSize  the maximum number of events in the pool
+     */
+    public ECSectorPool(int maxSize)
+    {
+        this.free    = new ArrayDeque<ECSector[]>(maxSize);
+        this.maxSize = maxSize;
+    }
+
+
+    /**
+     * Get the six sectors for a new event.  The sectors share one store, and
+     * sector with ID <code>n</code> is at index <code>n - 1</code>.  If
+     * there are sectors in the pool they are reset and reused, keeping their
+     * geometry and calibration, otherwise new ones are created.
+     *
+     * @return  the sectors of the event
+     */
+    public ECSector[] acquire()
+    {
+        ECSector[] sectors;
+        synchronized (free) {
+            sectors = free.pollFirst();
+        }
+
+        if (sectors == null) {
+            ECEventStore store = new ECEventStore();
+            sectors = new ECSector[ECGeneral.MAX_SECTORS];
+            for (int id = 1; id <= ECGeneral.MAX_SECTORS; id++)
+                sectors[id - 1] = new ECSector(id, store);
+        } else {
+            for (ECSector s : sectors)
+                s.reset();
+        }
+
+        return sectors;
+    }
+
+
+    /**
+     * Return the sectors of a finished event to the pool.  The sectors must
+     * not be used after this.
+     *
+     * @param sectors  the sectors obtained with {@link #acquire}
+     */
+    public void release(ECSector[] sectors)
+    {
+        synchronized (free) {
+            if (free.size() < maxSize)
+                free.addFirst(sectors);
+        }
+    }
+
+
+    /**
+     * Get the number of events in the pool.
+     *
+     * @return  the number of free events
+     */
+    public int size()
+    {
+        synchronized (free) {
+            return free.size();
+        }
+    }
+}
@@ -2,7 +2,12 @@ package org.ec.detector;
 
 /**
  * The <code>ECStrip</code> class represents a strip in the EC detector and
- * holds information about it.
+ * gives access to information about it.
+ * <p>
+ * The data of the strip is kept in one slot of an {@link ECEventStore}.  A
+ * strip that belongs to a {@link ECView view} is a lightweight object on top
+ * of the store of the view, and a strip created with the public constructors
+ * keeps its data in its own store until it is added to a view.
  * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
@@ -14,14 +19,8 @@ package org.ec.detector;
  */
 public class ECStrip
 {
-    private int    ID;
-    private double energy;
-    private double time;
-
-    private double rawAdcs;
-
-    private double peakEnergy;
-    private double peakEfr;
+    private ECEventStore store;
+    private int          slot;
 
 
     /**
@@ -35,10 +34,8 @@ public class ECStrip
      */
     public ECStrip(int id)
     {
-        this.ID         = id;
-        this.energy     = 0.0;
-        this.time       = 0.0;
-        this.peakEnergy = 0.0;
+        this.store = new ECEventStore(1, 1);
+        this.slot  = store.addDetachedStrip(id);
     }
 
 
@@ -53,10 +50,41 @@ public class ECStrip
      */
     public ECStrip(int id, double energy)
     {
-        this.ID         = id;
-        this.energy     = energy;
-        this.time       = 0.0;
-        this.peakEnergy = 0.0;
+        this(id);
+        store.setEnergy(slot, energy);
+    }
+
+
+    /**
+     * Create an object for the strip stored in the given slot of the store.
+     *
+     * @param store  the store with the data
+     * @param slot   the slot of the strip in the store
+     */
+    ECStrip(ECEventStore store, int slot)
+    {
+        this.store = store;
+        this.slot  = slot;
+    }
+
+
+    /**
+     * Move the data of the strip to the given slot of the store.  After
+     * this, the strip is a view of that slot.
+     *
+     * @param newStore  the store with the new slot
+     * @param newSlot   the slot to use
+     */
+    void attach(ECEventStore newStore, int newSlot)
+    {
+        newStore.setEnergy(newSlot, store.getEnergy(slot));
+        newStore.setTime(newSlot, store.getTime(slot));
+        newStore.setRawAdc(newSlot, store.getRawAdc(slot));
+        newStore.setPeakEnergy(newSlot, store.getPeakEnergy(slot));
+        newStore.setPeakEfr(newSlot, store.getPeakEfr(slot));
+
+        this.store = newStore;
+        this.slot  = newSlot;
     }
 
 
@@ -68,7 +96,7 @@ public class ECStrip
      */
     public void setEnergy(double energy)
     {
-        this.energy = energy;
+        store.setEnergy(slot, energy);
     }
 
 
@@ -80,7 +108,7 @@ public class ECStrip
      */
     public double getEnergy()
     {
-        return energy;
+        return store.getEnergy(slot);
     }
 
 
@@ -91,7 +119,7 @@ public class ECStrip
      */
     public void setTime(double time)
     {
-        this.time = time;
+        store.setTime(slot, time);
     }
 
 
@@ -102,7 +130,7 @@ public class ECStrip
      */
     public double getTime()
     {
-        return time;
+        return store.getTime(slot);
     }
 
 
@@ -114,7 +142,7 @@ public class ECStrip
      */
     public void setPeakEnergy(double energy)
     {
-        this.peakEnergy = energy;
+        store.setPeakEnergy(slot, energy);
     }
 
     /*
@@ -125,7 +153,7 @@ public class ECStrip
      */
     public double getPeakEnergy()
     {
-        return peakEnergy;
+        return store.getPeakEnergy(slot);
     }
 
 
@@ -136,7 +164,7 @@ public class ECStrip
      */
     public void setPeakEfr(double peakEfr)
     {
-        this.peakEfr = peakEfr;
+        store.setPeakEfr(slot, peakEfr);
     }
 
 
@@ -147,7 +175,7 @@ public class ECStrip
      */
     public double getPeakEfr()
     {
-        return peakEfr;
+        return store.getPeakEfr(slot);
     }
 
 
@@ -158,7 +186,7 @@ public class ECStrip
      */
     public void setRawAdcs(double rawAdcs)
     {
-        this.rawAdcs = rawAdcs;
+        store.setRawAdc(slot, rawAdcs);
     }
 
 
@@ -169,7 +197,7 @@ public class ECStrip
      */
     public double getRawAdcs()
     {
-        return rawAdcs;
+        return store.getRawAdc(slot);
     }
 
 
@@ -180,6 +208,17 @@ public class ECStrip
      */
     public int getID()
     {
-        return ID;
+        return store.getStripID(slot);
+    }
+
+
+    /**
+     * Get the slot of the store where the data of the strip is kept.
+     *
+     * @return  the slot of the strip
+     */
+    public int getSlot()
+    {
+        return slot;
     }
 }
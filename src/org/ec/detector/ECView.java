@@ -1,9 +1,11 @@
 package org.ec.detector;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 import org.ec.bos.ECEvu;
 import org.ec.fit.ECFitPeak;
@@ -18,6 +20,12 @@ import org.ec.fit.ECFitPeak;
  * the ones with information) and a list of peaks (created from the strips).
  * It also has a label to identify it.
  * <p>
+ * The strip data is kept in a range of slots of an {@link ECEventStore},
+ * given by the index of the view in the store, with one slot for each strip
+ * ID.  The strips can be filled in any order.  The strip objects of the view
+ * are lightweight views of those slots, created once for each ID and reused
+ * for all the events.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -34,9 +42,15 @@ public class ECView
     private String      key;
     private double      length;
 
+    private ECEventStore store;
+    private int          index;
+    private ECLayer      owner;
+
     private ArrayList<ECEvu>     evuList;
-    private ArrayList<ECStrip>   stripList;
+    private ECStrip[]            strips;
+    private List<ECStrip>        stripList;
     private ArrayList<ECFitPeak> peakList;
+    private double[]             peakKeys;
 
     // TODO Need a better way to store this calibration information
     public double[] calEch;
@@ -57,18 +71,41 @@ public class ECView
      * view is part of a layer object and is also identified by an unique
      * key constructed using the layer key and the view label.  This view does
      * not have any information about the strips on it.  That information need
-     * to be added.
+     * to be added.  The strip data is kept in a new store used only by this
+     * view.
      *
      * @param label     the label identifying the view
      * @param layerKey  the key of the layer that the view belongs
      */
     public ECView(ECViewLabel label, String layerKey)
+    {
+        this(label, layerKey, new ECEventStore(1, ECGeneral.MAX_STRIPS), 0);
+    }
+
+
+    /**
+     * Construct an object representing the EC view of the given label, with
+     * its strip data kept in the given store.  This view does not have any
+     * information about the strips on it.  That information need to be
+     * added.
+     *
+     * @param label     the label identifying the view
+     * @param layerKey  the key of the layer that the view belongs
+     * @param store     the store with the strip data
+     * @param index     the index of the view in the store
+     * @see             ECEventStore#viewIndex
+     */
+    public ECView(ECViewLabel label, String layerKey, ECEventStore store, int index)
     {
         this.label      = label;
         this.key        = layerKey + "." + label;
+        this.store      = store;
+        this.index      = index;
         this.evuList    = new ArrayList<ECEvu>();
-        this.stripList  = new ArrayList<ECStrip>();
+        this.strips     = new ECStrip[store.getCapacity()];
+        this.stripList  = new FiredStrips();
         this.peakList   = new ArrayList<ECFitPeak>();
+        this.peakKeys   = new double[ECGeneral.MAX_PEAKS + 1];
 
         this.calEch     = new double[ECGeneral.MAX_STRIPS];
         this.calAtten   = new double[ECGeneral.MAX_STRIPS];
@@ -110,13 +147,40 @@ public class ECView
 
 
     /**
-     * Add a new strip to the list of strips of the view.
+     * Add a new strip to the list of strips of the view.  The data of the
+     * strip is moved to the slot of its ID in the store of the view.  If the
+     * ID is not valid, the strip is not added.
      *
      * @param s  the strip object to be added
      */
     public void addStrip(ECStrip s)
     {
-        stripList.add(s);
+        int id   = s.getID();
+        int slot = store.addStrip(index, id);
+        if (slot < 0) return;
+
+        s.attach(store, slot);
+        strips[id] = s;
+    }
+
+
+    /**
+     * Create a new strip in the list of strips of the view, with all its
+     * properties initialized to zero.  The returned object can be used to
+     * fill the information of the strip.  If the strip was already created,
+     * the same object is returned and its data is kept.
+     *
+     * @param id  the identification number of the strip
+     * @return    the strip, or <code>null</code> if the ID is not valid
+     */
+    public ECStrip newStrip(int id)
+    {
+        int slot = store.addStrip(index, id);
+        if (slot < 0) return null;
+
+        if (strips[id] == null || strips[id].getSlot() != slot)
+            strips[id] = new ECStrip(store, slot);
+        return strips[id];
     }
 
 
@@ -127,18 +191,89 @@ public class ECView
      */
     public int getNStrips()
     {
-        return stripList.size();
+        return store.getNStrips(index);
+    }
+
+
+    /**
+     * Get the <em>nth</em> strip with information in the view, in the order
+     * they were added.
+     *
+     * @param n  the position of the strip in the view
+     * @return   the strip
+     */
+    public ECStrip getStrip(int n)
+    {
+        return strips[store.getStripID(store.getSlot(index, n))];
+    }
+
+
+    /**
+     * Get the strip with the given ID, if it has information.
+     *
+     * @param id  the identification number of the strip
+     * @return    the strip, or <code>null</code> if it has no information
+     */
+    public ECStrip getStripByID(int id)
+    {
+        if (id < 0 || id >= strips.length || !store.isFired(store.getSlotByID(index, id)))
+            return null;
+        return strips[id];
     }
 
 
     /**
-     * Get the list of strips of the view to iterate over it.
+     * Get the list of strips of the view to iterate over it, in the order
+     * they were added.
      *
      * @return  a {@link Collection} with the strips of the view
      */
     public Collection<ECStrip> getStripList()
     {
-       return Collections.unmodifiableList(stripList);
+       return stripList;
+    }
+
+
+    /**
+     * Reset the number of strips with information in the view to zero.
+     */
+    public void clearStripList()
+    {
+        store.clear(index);
+    }
+
+
+    /**
+     * Set the layer that owns this view.  The layer is notified when the
+     * length of the view changes.
+     *
+     * @param layer  the owner layer
+     */
+    void setOwner(ECLayer layer)
+    {
+        this.owner = layer;
+    }
+
+
+    /**
+     * Get the store where the strip data of the view is kept.
+     *
+     * @return  the store object
+     */
+    public ECEventStore getStore()
+    {
+        return store;
+    }
+
+
+    /**
+     * Get the index of the view in its store.
+     *
+     * @return  the index of the view
+     */
+    public int getIndex()
+    {
+        return index;
     }
 
 
@@ -152,7 +287,7 @@ public class ECView
      */
     public ECFitPeak newPeak()
     {
-        ECFitPeak p = new ECFitPeak(peakList.size() + 1, key);
+        ECFitPeak p = new ECFitPeak(peakList.size() + 1, key, label);
         peakList.add(p);
         return p;
     }
@@ -169,6 +304,18 @@ public class ECView
     }
 
 
+    /**
+     * Get the <em>nth</em> peak of the view.
+     *
+     * @param n  the position of the peak in the list
+     * @return   the peak
+     */
+    public ECFitPeak getPeak(int n)
+    {
+        return peakList.get(n);
+    }
+
+
     /**
      * Sort the list of peaks using the provided {@link Comparator}.
      *
@@ -180,6 +327,50 @@ public class ECView
     }
 
 
+    /**
+     * Remove the peaks with energy below the threshold and sort the rest by
+     * decreasing energy.  The result is the same as sorting the full list
+     * and cutting it at the first peak below the threshold, but only the
+     * remaining peaks are sorted, comparing their energies directly.  Peaks
+     * with equal energy keep their order.
+     *
+     * @param threshold  the minimum energy of the peaks
+     */
+    public void selectPeaks(double threshold)
+    {
+        int size = peakList.size();
+        if (peakKeys.length < size)
+            peakKeys = new double[size];
+
+        // Keep the peaks above the threshold at the front of the list
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            ECFitPeak p = peakList.get(i);
+            double    e = p.getEnergy();
+            if (!(e < threshold)) {
+                peakList.set(n, p);
+                peakKeys[n] = e;
+                n++;
+            }
+        }
+        resizePeakList(n);
+
+        // Insertion sort, there are only a few peaks
+        for (int i = 1; i < n; i++) {
+            ECFitPeak p = peakList.get(i);
+            double    e = peakKeys[i];
+            int j = i;
+            while (j > 0 && peakKeys[j - 1] < e) {
+                peakList.set(j, peakList.get(j - 1));
+                peakKeys[j] = peakKeys[j - 1];
+                j--;
+            }
+            peakList.set(j, p);
+            peakKeys[j] = e;
+        }
+    }
+
+
     /**
      * Get the number of found peaks in the view.
      *
@@ -200,6 +391,19 @@ public class ECView
     }
 
 
+    /**
+     * Clear the event data of the view: the raw data, the strips and the
+     * peaks.  The calibration data and the length are kept, so the view can
+     * be reused for a new event.
+     */
+    public void reset()
+    {
+        evuList.clear();
+        clearStripList();
+        clearPeakList();
+    }
+
+
     /**
      * Set the length of the view's side.
      *
@@ -207,6 +411,7 @@ public class ECView
      */
     public void setLength(double length)
     {
+        if (owner != null && this.length != length) owner.invalidateGeometry();
         this.length = length;
     }
 
@@ -219,7 +424,8 @@ public class ECView
      */
     public void resizePeakList(int size)
     {
-        peakList = (ArrayList<ECFitPeak>) peakList.subList(0, size + 1);
+        for (int i = peakList.size() - 1; i >= size; i--)
+            peakList.remove(i);
     }
 
 
@@ -243,4 +449,26 @@ public class ECView
     {
         return label;
     }
+
+
+    /**
+     * Read-only list with the fired strips of the view.
+     */
+    private class FiredStrips extends AbstractList<ECStrip>
+    {
+        @Override
+        public ECStrip get(int n)
+        {
+            if (n < 0 || n >= size())
+                throw new IndexOutOfBoundsException("Index: " + n);
+            return getStrip(n);
+        }
+
+
+        @Override
+        public int size()
+        {
+            return getNStrips();
+        }
+    }
 }
@@ -1,8 +1,9 @@
 package org.ec.fit;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.TreeMap;
+import java.util.Collections;
+import java.util.List;
 
 import org.ec.detector.ECLayer;
 import org.ec.detector.ECLayerName;
@@ -35,14 +36,30 @@ public class ECFitHit
     private double ch2;
     private double thick;
 
-    private HashMap<String, Double> clasCoordinates;
-    private HashMap<String, Double> localCoordinates;
-    private HashMap<String, Double> faceCoordinates;
+    private double localI;
+    private double localJ;
+    private double localK;
+    private double localDI;
+    private double localDJ;
+    private double localDK;
 
-    private TreeMap<ECViewLabel, ECPeakHit> peakHitList;
+    private double clasX;
+    private double clasY;
+    private double clasZ;
+    private double clasDX;
+    private double clasDY;
+    private double clasDZ;
 
-    private TreeMap<ECLayerName, ECFitHit>  matched;
-    private TreeMap<ECLayerName, Double>    c2matched;
+    private double faceI;
+    private double faceJ;
+    private double faceDI;
+    private double faceDJ;
+
+    private ECPeakHit[]     peakHits;
+    private List<ECPeakHit> peakHitList;
+
+    private ECFitHit[]      matched;
+    private double[]        c2matched;
 
     private int nStrips;
 
@@ -71,59 +88,18 @@ public class ECFitHit
         this.ch2     = 0;       // Should be used outside, or with a different initial value?
         this.nStrips = 0;
 
-        initializeCoordinates();
-
-        // Create PeakHit objects
-        peakHitList = new TreeMap<ECViewLabel, ECPeakHit>();
-
-        peakHitList.put(ECViewLabel.U, new ECPeakHit(this, u));
-        peakHitList.put(ECViewLabel.V, new ECPeakHit(this, v));
-        peakHitList.put(ECViewLabel.W, new ECPeakHit(this, w));
-
-        // Create matched sets
-        matched   = new TreeMap<ECLayerName, ECFitHit>();
-        c2matched = new TreeMap<ECLayerName, Double>();
-
-        ECLayerName layerName = layer.getName();
-        for (ECLayerName name : ECLayerName.values()) {
-            if (name != layerName) {
-                matched.put(name, null);
-                c2matched.put(name, 0.0);
-            }
-        }
-    }
-
-
-    /**
-     * Create and initialize to zero the three coordinates hashmaps.
-     * These maps store the information of the hit for the local, CLAS and
-     * face coordinate systems.
-     */
-    private void initializeCoordinates()
-    {
-        // Set coordinates names
-        localCoordinates = new HashMap<String, Double>();
-        clasCoordinates  = new HashMap<String, Double>();
-        faceCoordinates  = new HashMap<String, Double>();
+        // Create PeakHit objects, indexed by the ordinal of the view label
+        peakHits = new ECPeakHit[ECViewLabel.values().length];
 
-        localCoordinates.put("i",  0.0);
-        localCoordinates.put("j",  0.0);
-        localCoordinates.put("k",  0.0);
-        localCoordinates.put("di", 0.0);
-        localCoordinates.put("dj", 0.0);
-        localCoordinates.put("dk", 0.0);
+        peakHits[ECViewLabel.U.ordinal()] = new ECPeakHit(this, u);
+        peakHits[ECViewLabel.V.ordinal()] = new ECPeakHit(this, v);
+        peakHits[ECViewLabel.W.ordinal()] = new ECPeakHit(this, w);
 
-        clasCoordinates.put("x",  0.0);
-        clasCoordinates.put("y",  0.0);
-        clasCoordinates.put("z",  0.0);
-        clasCoordinates.put("dx", 0.0);
-        clasCoordinates.put("dy", 0.0);
-        clasCoordinates.put("dz", 0.0);
+        peakHitList = Collections.unmodifiableList(Arrays.asList(peakHits));
 
-        faceCoordinates.put("i",  0.0);
-        faceCoordinates.put("j",  0.0);
-        faceCoordinates.put("di", 0.0);
-        faceCoordinates.put("dj", 0.0);
+        // Create matched sets, indexed by the ordinal of the layer name
+        matched   = new ECFitHit[ECLayerName.values().length];
+        c2matched = new double[ECLayerName.values().length];
     }
 
 
@@ -136,9 +112,9 @@ public class ECFitHit
      */
     public void setPaths(double u, double v, double w)
     {
-        peakHitList.get(ECViewLabel.U).setPath(u);
-        peakHitList.get(ECViewLabel.V).setPath(v);
-        peakHitList.get(ECViewLabel.W).setPath(w);
+        peakHits[ECViewLabel.U.ordinal()].setPath(u);
+        peakHits[ECViewLabel.V.ordinal()].setPath(v);
+        peakHits[ECViewLabel.W.ordinal()].setPath(w);
     }
 
 
@@ -150,7 +126,7 @@ public class ECFitHit
      */
     public ECPeakHit getPeakHit(ECViewLabel view)
     {
-        return peakHitList.get(view);
+        return peakHits[view.ordinal()];
     }
 
 
@@ -161,7 +137,7 @@ public class ECFitHit
      */
     public Collection<ECPeakHit> getAllPeakHits()
     {
-        return peakHitList.values();
+        return peakHitList;
     }
 
 
@@ -253,6 +229,288 @@ public class ECFitHit
     }
 
 
+    /**
+     * Set the position of the hit in the local coordinate system.
+     *
+     * @param i  the position in the <code>i</code> axis
+     * @param j  the position in the <code>j</code> axis
+     * @param k  the position in the <code>k</code> axis
+     */
+    public void setLocalCoords(double i, double j, double k)
+    {
+        localI = i;
+        localJ = j;
+        localK = k;
+    }
+
+
+    /**
+     * Set the delta of the position of the hit in the local coordinate
+     * system.
+     *
+     * @param di  the delta in the <code>i</code> axis
+     * @param dj  the delta in the <code>j</code> axis
+     * @param dk  the delta in the <code>k</code> axis
+     */
+    public void setLocalErrors(double di, double dj, double dk)
+    {
+        localDI = di;
+        localDJ = dj;
+        localDK = dk;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>i</code> axis of the
+     * local coordinate system.
+     *
+     * @return  the position
+     */
+    public double getLocalI()
+    {
+        return localI;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>j</code> axis of the
+     * local coordinate system.
+     *
+     * @return  the position
+     */
+    public double getLocalJ()
+    {
+        return localJ;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>k</code> axis of the
+     * local coordinate system.
+     *
+     * @return  the position
+     */
+    public double getLocalK()
+    {
+        return localK;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>i</code>
+     * axis of the local coordinate system.
+     *
+     * @return  the position
+     */
+    public double getLocalDI()
+    {
+        return localDI;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>j</code>
+     * axis of the local coordinate system.
+     *
+     * @return  the position
+     */
+    public double getLocalDJ()
+    {
+        return localDJ;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>k</code>
+     * axis of the local coordinate system.
+     *
+     * @return  the position
+     */
+    public double getLocalDK()
+    {
+        return localDK;
+    }
+
+
+    /**
+     * Set the position of the hit in the CLAS coordinate system.
+     *
+     * @param x  the position in the <code>x</code> axis
+     * @param y  the position in the <code>y</code> axis
+     * @param z  the position in the <code>z</code> axis
+     */
+    public void setClasCoords(double x, double y, double z)
+    {
+        clasX = x;
+        clasY = y;
+        clasZ = z;
+    }
+
+
+    /**
+     * Set the delta of the position of the hit in the CLAS coordinate
+     * system.
+     *
+     * @param dx  the delta in the <code>x</code> axis
+     * @param dy  the delta in the <code>y</code> axis
+     * @param dz  the delta in the <code>z</code> axis
+     */
+    public void setClasErrors(double dx, double dy, double dz)
+    {
+        clasDX = dx;
+        clasDY = dy;
+        clasDZ = dz;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>x</code> axis of the
+     * CLAS coordinate system.
+     *
+     * @return  the position
+     */
+    public double getClasX()
+    {
+        return clasX;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>y</code> axis of the
+     * CLAS coordinate system.
+     *
+     * @return  the position
+     */
+    public double getClasY()
+    {
+        return clasY;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>z</code> axis of the
+     * CLAS coordinate system.
+     *
+     * @return  the position
+     */
+    public double getClasZ()
+    {
+        return clasZ;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>x</code>
+     * axis of the CLAS coordinate system.
+     *
+     * @return  the position
+     */
+    public double getClasDX()
+    {
+        return clasDX;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>y</code>
+     * axis of the CLAS coordinate system.
+     *
+     * @return  the position
+     */
+    public double getClasDY()
+    {
+        return clasDY;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>z</code>
+     * axis of the CLAS coordinate system.
+     *
+     * @return  the position
+     */
+    public double getClasDZ()
+    {
+        return clasDZ;
+    }
+
+
+    /**
+     * Set the position of the hit in the coordinate system on the face of
+     * the EC.
+     *
+     * @param i  the position in the <code>i</code> axis
+     * @param j  the position in the <code>j</code> axis
+     */
+    public void setFaceCoords(double i, double j)
+    {
+        faceI = i;
+        faceJ = j;
+    }
+
+
+    /**
+     * Set the delta of the position of the hit in the coordinate system on
+     * the face of the EC.
+     *
+     * @param di  the delta in the <code>i</code> axis
+     * @param dj  the delta in the <code>j</code> axis
+     */
+    public void setFaceErrors(double di, double dj)
+    {
+        faceDI = di;
+        faceDJ = dj;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>i</code> axis of the
+     * coordinate system on the face of the EC.
+     *
+     * @return  the position
+     */
+    public double getFaceI()
+    {
+        return faceI;
+    }
+
+
+    /**
+     * Get the position of the hit in the <code>j</code> axis of the
+     * coordinate system on the face of the EC.
+     *
+     * @return  the position
+     */
+    public double getFaceJ()
+    {
+        return faceJ;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>i</code>
+     * axis of the coordinate system on the face of the EC.
+     *
+     * @return  the position
+     */
+    public double getFaceDI()
+    {
+        return faceDI;
+    }
+
+
+    /**
+     * Get the delta of the position of the hit in the <code>j</code>
+     * axis of the coordinate system on the face of the EC.
+     *
+     * @return  the position
+     */
+    public double getFaceDJ()
+    {
+        return faceDJ;
+    }
+
+
     /**
      * Set the axis position in the local coordinate system.  This method sets
      * the position of the hit in the local coordinate system, one axis at the
@@ -266,11 +524,18 @@ public class ECFitHit
      *
      * @param axis      the desired axis
      * @param position  the position in the axis
+     * @deprecated use {@link #setLocalCoords} and the related
+     *             methods, that do not box the values
      */
+    @Deprecated
     public void setLocalCoord(String axis, double position)
     {
-        if (localCoordinates.containsKey(axis))
-            localCoordinates.put(axis, position);
+        if      (axis.equals("i"))   localI  = position;
+        else if (axis.equals("j"))   localJ  = position;
+        else if (axis.equals("k"))   localK  = position;
+        else if (axis.equals("di"))  localDI = position;
+        else if (axis.equals("dj"))  localDJ = position;
+        else if (axis.equals("dk"))  localDK = position;
     }
 
 
@@ -287,13 +552,18 @@ public class ECFitHit
      *
      * @param axis  the desired axis
      * @return      the position of the hit in the axis
+     * @deprecated use the typed getters, like {@link #getLocalI}
      */
+    @Deprecated
     public double getLocalCoord(String axis)
     {
-        if (localCoordinates.containsKey(axis))
-            return localCoordinates.get(axis);
-        else
-            return 0.0;
+        if (axis.equals("i"))   return localI;
+        if (axis.equals("j"))   return localJ;
+        if (axis.equals("k"))   return localK;
+        if (axis.equals("di"))  return localDI;
+        if (axis.equals("dj"))  return localDJ;
+        if (axis.equals("dk"))  return localDK;
+        return 0.0;
     }
 
 
@@ -310,11 +580,18 @@ public class ECFitHit
      *
      * @param axis      the desired axis
      * @param position  the position in the axis
+     * @deprecated use {@link #setClasCoords} and the related
+     *             methods, that do not box the values
      */
+    @Deprecated
     public void setClasCoord(String axis, double position)
     {
-        if (clasCoordinates.containsKey(axis))
-            clasCoordinates.put(axis, position);
+        if      (axis.equals("x"))   clasX   = position;
+        else if (axis.equals("y"))   clasY   = position;
+        else if (axis.equals("z"))   clasZ   = position;
+        else if (axis.equals("dx"))  clasDX  = position;
+        else if (axis.equals("dy"))  clasDY  = position;
+        else if (axis.equals("dz"))  clasDZ  = position;
     }
 
 
@@ -331,13 +608,18 @@ public class ECFitHit
      *
      * @param axis  the desired axis
      * @return      the position of the hit in the axis
+     * @deprecated use the typed getters, like {@link #getClasX}
      */
+    @Deprecated
     public double getClasCoord(String axis)
     {
-        if (clasCoordinates.containsKey(axis))
-            return clasCoordinates.get(axis);
-        else
-            return 0.0;
+        if (axis.equals("x"))   return clasX;
+        if (axis.equals("y"))   return clasY;
+        if (axis.equals("z"))   return clasZ;
+        if (axis.equals("dx"))  return clasDX;
+        if (axis.equals("dy"))  return clasDY;
+        if (axis.equals("dz"))  return clasDZ;
+        return 0.0;
     }
 
 
@@ -352,11 +634,16 @@ public class ECFitHit
      *
      * @param axis      the desired axis
      * @param position  the position in the axis
+     * @deprecated use {@link #setFaceCoords} and the related
+     *             methods, that do not box the values
      */
+    @Deprecated
     public void setFaceCoord(String axis, double position)
     {
-        if (faceCoordinates.containsKey(axis))
-            faceCoordinates.put(axis, position);
+        if      (axis.equals("i"))   faceI   = position;
+        else if (axis.equals("j"))   faceJ   = position;
+        else if (axis.equals("di"))  faceDI  = position;
+        else if (axis.equals("dj"))  faceDJ  = position;
     }
 
 
@@ -371,13 +658,16 @@ public class ECFitHit
      *
      * @param axis  the desired axis
      * @return      the position of the hit in the axis
+     * @deprecated use the typed getters, like {@link #getFaceI}
      */
+    @Deprecated
     public double getFaceCoord(String axis)
     {
-        if (faceCoordinates.containsKey(axis))
-            return faceCoordinates.get(axis);
-        else
-            return 0.0;
+        if (axis.equals("i"))   return faceI;
+        if (axis.equals("j"))   return faceJ;
+        if (axis.equals("di"))  return faceDI;
+        if (axis.equals("dj"))  return faceDJ;
+        return 0.0;
     }
 
 
@@ -409,7 +699,7 @@ public class ECFitHit
      */
     public void setMatch(ECLayer layer, ECFitHit hit)
     {
-        matched.put(layer.getName(), hit);
+        matched[layer.getName().ordinal()] = hit;
     }
 
 
@@ -421,7 +711,7 @@ public class ECFitHit
      */
     public ECFitHit getMatch(ECLayer layer)
     {
-        return matched.get(layer.getName());
+        return matched[layer.getName().ordinal()];
     }
 
 
@@ -433,7 +723,7 @@ public class ECFitHit
      */
     public void setC2Match(ECLayer layer, double value)
     {
-        c2matched.put(layer.getName(), value);
+        c2matched[layer.getName().ordinal()] = value;
     }
 
 
@@ -445,7 +735,7 @@ public class ECFitHit
      */
     public double getC2Match(ECLayer layer)
     {
-        return c2matched.get(layer.getName());
+        return c2matched[layer.getName().ordinal()];
     }
 
 
@@ -480,4 +770,16 @@ public class ECFitHit
     {
         return ID;
     }
+
+
+    /**
+     * Set the correlative identification number of the hit.  Used when
+     * other hits are removed from the list of hits of the layer.
+     *
+     * @param id  the ID number
+     */
+    public void setID(int id)
+    {
+        this.ID = id;
+    }
 }
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Collections;
 
 import org.ec.detector.ECStrip;
+import org.ec.detector.ECViewLabel;
 
 /**
  * The <code>ECFitPeak</code> class represents a peak in a view of the EC
@@ -22,8 +23,9 @@ import org.ec.detector.ECStrip;
  */
 public class ECFitPeak
 {
-    private int    ID;
-    private String key;
+    private int         ID;
+    private String      key;
+    private ECViewLabel view;
 
     private ArrayList<ECStrip> stripList;
 
@@ -47,11 +49,13 @@ public class ECFitPeak
      *
      * @param id       the correlative id number of the peak
      * @param viewKey  the key of the view this peak belongs
+     * @param view     the label of the view this peak belongs
      */
-    public ECFitPeak(int id, String viewKey)
+    public ECFitPeak(int id, String viewKey, ECViewLabel view)
     {
         this.ID     = id;
         this.key    = viewKey + ".PEAK:" + id;
+        this.view   = view;
         this.energy = 0.0;
 
         this.stripList = new ArrayList<ECStrip>();
@@ -168,6 +172,17 @@ public class ECFitPeak
     }
 
 
+    /**
+     * Get the label of the view this peak belongs.
+     *
+     * @return  the label of the view
+     */
+    public ECViewLabel getView()
+    {
+        return view;
+    }
+
+
     /**
      * Get the unique key that identifies the peak globally.
      *
@@ -3,7 +3,6 @@ package org.ec.fit;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 
 
 /**
@@ -41,7 +40,9 @@ public class ECPeakHit
     private double    width;
     private double    dist;
 
-    private HashMap<Integer, Double> moments;
+    private double    moment2;
+    private double    moment3;
+    private double    moment4;
 
     private int       nStrips;
 
@@ -67,13 +68,22 @@ public class ECPeakHit
         this.width       = 0;
         this.dist        = 0;
 
+        this.moment2     = 0;
+        this.moment3     = 0;
+        this.moment4     = 0;
+
         this.nStrips     = 0;
+    }
 
-        // Create the list of the moments
-        moments = new HashMap<Integer, Double>();
-        moments.put(2, 0.0);
-        moments.put(3, 0.0);
-        moments.put(4, 0.0);
+
+    /**
+     * Get the hit that this object belongs to.
+     *
+     * @return the hit object
+     */
+    public ECFitHit getHit()
+    {
+        return hit;
     }
 
 
@@ -272,8 +282,27 @@ public class ECPeakHit
      */
     public void setMoment(int nth, double value)
     {
-        if (moments.containsKey(nth))
-            moments.put(nth, value);
+        switch (nth) {
+            case 2: moment2 = value; break;
+            case 3: moment3 = value; break;
+            case 4: moment4 = value; break;
+            default: break;
+        }
+    }
+
+
+    /**
+     * Set the second, third and fourth moments of the hit in this axis.
+     *
+     * @param m2  the second moment
+     * @param m3  the third moment
+     * @param m4  the fourth moment
+     */
+    public void setMoments(double m2, double m3, double m4)
+    {
+        this.moment2 = m2;
+        this.moment3 = m3;
+        this.moment4 = m4;
     }
 
 
@@ -289,10 +318,12 @@ public class ECPeakHit
      */
     public double getMoment(int nth)
     {
-        if (moments.containsKey(nth))
-            return moments.get(nth);
-        else
-            return 0.0;
+        switch (nth) {
+            case 2:  return moment2;
+            case 3:  return moment3;
+            case 4:  return moment4;
+            default: return 0.0;
+        }
     }
 
 
@@ -0,0 +1,243 @@
+package org.ec.services;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.jlab.coda.clara.core.ICService;
+
+import org.ec.detector.ECSector;
+
+/**
+ * The <code>ECEventOrchestrator</code> runs the chain of services for the
+ * six sectors of one event inside the same process.
+ * <p>
+ * The sectors are independent until the event is assembled, so the chain of
+ * each sector is submitted as one task to a {@link ForkJoinPool}, and the
+ * event is finished when all of them are joined.  With a parallelism of one
+ * there is no pool, and the sectors are processed one after the other by
+ * the calling thread, as in the original design.
+ * <p>
+ * The default chain is {@link HitsFinderService} followed by
+ * {@link MatchFinderService}.  The strips must be already filled, or a
+ * service that fills them must be the first one of the chain.  The services
+ * are shared by all the tasks, so they must not keep state between calls.
+ * <p>
+ * The latency of each event (the time since it is given to the orchestrator
+ * until all its sectors are finished) is recorded.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ */
+public class ECEventOrchestrator
+{
+    private final ICService[]  chain;
+    private final ForkJoinPool pool;
+
+    private long nEvents;
+    private long totalLatency;
+    private long maxLatency;
+    private long lastLatency;
+
+
+    /**
+     * Construct an orchestrator with the default chain of services.
+     *
+     * @param parallelism  the number of threads used for the sectors of one
+     *                     event, or one to use the calling thread
+     */
+    public ECEventOrchestrator(int parallelism)
+    {
+        this(new ICService[] { new HitsFinderService(), new MatchFinderService() },
+             parallelism);
+    }
+
+
+    /**
+     * Construct an orchestrator with the given chain of services.  Each
+     * service receives the sector returned by the previous one.
+     *
+     * @param chain        the services to run for each sector, in order
+     * @param parallelism  the number of threads used for the sectors of one
+     *                     event, or one to use the calling thread
+     */
+    public ECEventOrchestrator(ICService[] chain, int parallelism)
+    {
+        this.chain = chain.clone();
+        this.pool  = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+
+    /**
+     * Run the chain of services for all the sectors of one event, and wait
+     * until all of them are finished.
+     *
+     * @param sectors  the sectors of the event
+     * @return         the sectors returned by the last service, in the same
+     *                 order
+     */
+    public ECSector[] process(ECSector[] sectors)
+    {
+        long start = System.nanoTime();
+
+        ECSector[] event = new ECSector[sectors.length];
+        if (pool == null) {
+            for (int n = 0; n < sectors.length; n++)
+                event[n] = runChain(chain, sectors[n]);
+        } else {
+            SectorTask[] tasks = new SectorTask[sectors.length];
+            for (int n = 0; n < sectors.length; n++)
+                tasks[n] = new SectorTask(chain, sectors[n]);
+            pool.invoke(new EventTask(tasks));
+            for (int n = 0; n < sectors.length; n++)
+                event[n] = tasks[n].result;
+        }
+
+        addLatency(System.nanoTime() - start);
+
+        return event;
+    }
+
+
+    /**
+     * Stop the threads of the orchestrator.  The orchestrator can not
+     * process events after this.
+     */
+    public void shutdown()
+    {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+
+    /**
+     * Get the number of threads used for the sectors of one event.
+     *
+     * @return  the parallelism, one if the calling thread is used
+     */
+    public int getParallelism()
+    {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+
+
+    /**
+     * Get the number of processed events.
+     *
+     * @return  the number of events
+     */
+    public synchronized long getNEvents()
+    {
+        return nEvents;
+    }
+
+
+    /**
+     * Get the latency of the last processed event.
+     *
+     * @return  the latency in nanoseconds
+     */
+    public synchronized long getLastLatency()
+    {
+        return lastLatency;
+    }
+
+
+    /**
+     * Get the mean latency of all the processed events.
+     *
+     * @return  the mean latency in nanoseconds, or zero if there are no
+     *          events
+     */
+    public synchronized double getMeanLatency()
+    {
+        return nEvents > 0 ? (double) totalLatency / nEvents : 0;
+    }
+
+
+    /**
+     * Get the maximum latency of all the processed events.
+     *
+     * @return  the maximum latency in nanoseconds
+     */
+    public synchronized long getMaxLatency()
+    {
+        return maxLatency;
+    }
+
+
+    /**
+     * Forget the latencies of the processed events.
+     */
+    public synchronized void resetLatency()
+    {
+        nEvents      = 0;
+        totalLatency = 0;
+        maxLatency   = 0;
+        lastLatency  = 0;
+    }
+
+
+    private synchronized void addLatency(long latency)
+    {
+        nEvents++;
+        totalLatency += latency;
+        lastLatency   = latency;
+        if (latency > maxLatency)
+            maxLatency = latency;
+    }
+
+
+    private static ECSector runChain(ICService[] chain, ECSector sector)
+    {
+        Object data = sector;
+        for (ICService service : chain)
+            data = service.executeService(0, data);
+        return (ECSector) data;
+    }
+
+
+    // Fork the tasks of all the sectors and join them
+    @SuppressWarnings("serial")
+    private static class EventTask extends RecursiveAction
+    {
+        private final SectorTask[] tasks;
+
+        EventTask(SectorTask[] tasks)
+        {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute()
+        {
+            invokeAll(tasks);
+        }
+    }
+
+
+    // The chain of services for one sector
+    @SuppressWarnings("serial")
+    private static class SectorTask extends RecursiveAction
+    {
+        private final ICService[] chain;
+        private final ECSector    sector;
+        private ECSector          result;
+
+        SectorTask(ICService[] chain, ECSector sector)
+        {
+            this.chain  = chain;
+            this.sector = sector;
+        }
+
+        @Override
+        protected void compute()
+        {
+            result = runChain(chain, sector);
+        }
+    }
+}
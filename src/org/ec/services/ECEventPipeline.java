@@ -0,0 +1,335 @@
+package org.ec.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jlab.coda.clara.core.ICService;
+
+import org.ec.detector.ECSector;
+
+/**
+ * The <code>ECEventPipeline</code> processes many events at the same time,
+ * for offline running.
+ * <p>
+ * The events go through a chain of stages: a reader, the processing stages
+ * (fill the strips, find the hits, match them...) and a writer.  Each
+ * processing stage has its own number of worker threads, and the stages
+ * are connected by bounded queues, so different events are in different
+ * stages at the same time, and several events can be in the same stage.
+ * The events can finish their processing in any order, so a reorder buffer
+ * before the writer gives them to it in the same order they were read.
+ * <p>
+ * At most <code>maxInFlight</code> events are between the reader and the
+ * writer.  The reader waits for a free place before reading the next
+ * event, so a slow stage or writer stops the reader instead of filling the
+ * memory with events, and the queues and the reorder buffer never hold
+ * more than that number of events.
+ * <p>
+ * A pipeline can be run several times, but not by two threads at the same
+ * time.  If a stage, the reader or the writer throws an exception, all the
+ * threads are stopped and the exception is thrown by {@link #run}.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECEventOrchestrator
+ */
+public class ECEventPipeline
+{
+    /**
+     * Gives the events to the pipeline.
+     */
+    public interface Reader
+    {
+        /**
+         * Read the next event.
+         *
+         * @return  the sectors of the event, or <code>null</code> if there
+         *          are no more events
+         */
+        ECSector[] read();
+    }
+
+
+    /**
+     * Processes one event in a stage of the pipeline.  The same object is
+     * used by all the workers of the stage, so it must not keep state
+     * between calls.
+     */
+    public interface Stage
+    {
+        /**
+         * Process the event.
+         *
+         * @param sectors  the sectors of the event
+         */
+        void process(ECSector[] sectors);
+    }
+
+
+    /**
+     * Receives the processed events, in the order they were read.
+     */
+    public interface Writer
+    {
+        /**
+         * Write the event.
+         *
+         * @param sectors  the sectors of the event
+         */
+        void write(ECSector[] sectors);
+    }
+
+
+    // The end of the events
+    private static final Item END = new Item(-1, null);
+
+    private final int           maxInFlight;
+    private final List<Stage>   stages;
+    private final List<Integer> workers;
+
+    private volatile Throwable  failure;
+    private List<Thread>        threads;
+
+
+    /**
+     * Construct an empty pipeline.  Use {@link #addStage} to add the
+     * processing stages.
+     *
+     * @param maxInFlight  the maximum number of events between the reader
+     *                     and the writer
+     * @throws IllegalArgumentException if <code>maxInFlight</code> is not
+     *         positive
+     */
+    public ECEventPipeline(int maxInFlight)
+    {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("Bad number of events in flight: " + maxInFlight);
+
+        this.maxInFlight = maxInFlight;
+        this.stages      = new ArrayList<Stage>();
+        this.workers     = new ArrayList<Integer>();
+    }
+
+
+    /**
+     * Add a processing stage at the end of the pipeline.
+     *
+     * @param stage    the stage
+     * @param nWorkers the number of threads of the stage
+     * @throws IllegalArgumentException if <code>nWorkers</code> is not
+     *         positive
+     */
+    public void addStage(Stage stage, int nWorkers)
+    {
+        if (nWorkers < 1)
+            throw new IllegalArgumentException("Bad number of workers: " + nWorkers);
+
+        stages.add(stage);
+        workers.add(nWorkers);
+    }
+
+
+    /**
+     * Add a processing stage that calls the service for each sector of the
+     * event.  The service receives the sector as its data.
+     *
+     * @param service  the service, without state between calls
+     * @param nWorkers the number of threads of the stage
+     */
+    public void addStage(final ICService service, int nWorkers)
+    {
+        addStage(new Stage() {
+            public void process(ECSector[] sectors)
+            {
+                for (ECSector sector : sectors)
+                    service.executeService(0, sector);
+            }
+        }, nWorkers);
+    }
+
+
+    /**
+     * Read all the events, process them and write them.  The method returns
+     * when the last event has been written.
+     *
+     * @param reader  the reader of the events
+     * @param writer  the writer of the events
+     * @return        the number of events
+     * @throws RuntimeException the exception thrown by a stage, the reader
+     *         or the writer, or an <code>IllegalStateException</code> if the
+     *         calling thread is interrupted
+     */
+    public long run(final Reader reader, final Writer writer)
+    {
+        final int nStages = stages.size();
+
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final List<BlockingQueue<Item>> queues = new ArrayList<BlockingQueue<Item>>();
+        for (int s = 0; s <= nStages; s++)
+            queues.add(new ArrayBlockingQueue<Item>(maxInFlight + 1));
+
+        failure = null;
+        threads = new ArrayList<Thread>();
+
+        final long[] nEvents = new long[1];
+
+        threads.add(new Thread(new Runnable() {
+            public void run()
+            {
+                readEvents(reader, inFlight, queues.get(0));
+            }
+        }, "ec-reader"));
+
+        for (int s = 0; s < nStages; s++) {
+            final Stage               stage   = stages.get(s);
+            final BlockingQueue<Item> input   = queues.get(s);
+            final BlockingQueue<Item> output  = queues.get(s + 1);
+            final AtomicInteger       running = new AtomicInteger(workers.get(s));
+            for (int w = 0; w < workers.get(s); w++) {
+                threads.add(new Thread(new Runnable() {
+                    public void run()
+                    {
+                        processEvents(stage, input, output, running);
+                    }
+                }, "ec-stage-" + s + "-" + w));
+            }
+        }
+
+        threads.add(new Thread(new Runnable() {
+            public void run()
+            {
+                nEvents[0] = writeEvents(writer, inFlight, queues.get(nStages));
+            }
+        }, "ec-writer"));
+
+        for (Thread t : threads)
+            t.start();
+
+        try {
+            for (Thread t : threads)
+                t.join();
+        } catch (InterruptedException e) {
+            fail(e);
+            for (Thread t : threads)
+                t.interrupt();
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable t = failure;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        if (t != null)
+            throw new IllegalStateException("Pipeline interrupted", t);
+
+        return nEvents[0];
+    }
+
+
+    private void readEvents(Reader reader, Semaphore inFlight, BlockingQueue<Item> output)
+    {
+        try {
+            long seq = 0;
+            while (true) {
+                inFlight.acquire();
+                ECSector[] event = reader.read();
+                if (event == null)
+                    break;
+                output.put(new Item(seq++, event));
+            }
+            output.put(END);
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+
+    private void processEvents(Stage stage,
+                               BlockingQueue<Item> input,
+                               BlockingQueue<Item> output,
+                               AtomicInteger running)
+    {
+        try {
+            while (true) {
+                Item item = input.take();
+                if (item == END) {
+                    // Let the other workers of the stage see the end too,
+                    // the last one passes it to the next stage
+                    input.put(END);
+                    if (running.decrementAndGet() == 0)
+                        output.put(END);
+                    return;
+                }
+                stage.process(item.event);
+                output.put(item);
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+
+    // The reorder buffer is a ring indexed by the sequence number.  There
+    // are never more than maxInFlight events after the next one to write,
+    // so two waiting events never share a place.
+    private long writeEvents(Writer writer, Semaphore inFlight, BlockingQueue<Item> input)
+    {
+        Item[] buffer = new Item[maxInFlight];
+        long   next   = 0;
+        try {
+            while (true) {
+                Item item = input.take();
+                if (item == END)
+                    break;
+                buffer[(int) (item.seq % maxInFlight)] = item;
+
+                int n = (int) (next % maxInFlight);
+                while (buffer[n] != null) {
+                    writer.write(buffer[n].event);
+                    buffer[n] = null;
+                    inFlight.release();
+                    next++;
+                    n = (int) (next % maxInFlight);
+                }
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+        return next;
+    }
+
+
+    // Keep the first failure and stop all the threads
+    private synchronized void fail(Throwable e)
+    {
+        if (failure == null) {
+            failure = e;
+            for (Thread t : threads)
+                if (t != Thread.currentThread())
+                    t.interrupt();
+        }
+    }
+
+
+    private static class Item
+    {
+        final long       seq;
+        final ECSector[] event;
+
+        Item(long seq, ECSector[] event)
+        {
+            this.seq   = seq;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.ec.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ec.detector.ECSector;
+
+/**
+ * Runs a service over a batch of sectors, for the array variant of
+ * <code>executeService</code>.
+ * <p>
+ * The batch is split in consecutive chunks, one for each worker.  Each
+ * chunk gets a new {@link Worker} from the service, that keeps its finders
+ * and buffers for all the sectors of the chunk.  The worker first gets all
+ * the sectors of its chunk at once, and then processes them one at a time.  The first chunk runs in
+ * the calling thread and the others in a pool of daemon threads, so with
+ * one worker (the default) there is no pool at all.  Different calls do
+ * not share workers, so the batch can be called from several threads.
+ * <p>
+ * Each batch uses the number of workers and the pool that were set when it
+ * started.  A new number of workers creates a new pool, and the old one is
+ * not shut down but left to the batches still using it, and its threads
+ * end when they are idle.  If a chunk fails, the other chunks stop at the
+ * next sector, and the batch waits for all of them before throwing the
+ * exception, so no sector is changed after the call returns.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ */
+final class ECSectorBatch
+{
+    /**
+     * Processes the sectors of one chunk, one at a time.
+     */
+    interface Worker
+    {
+        /**
+         * Prepare all the sectors of the chunk at once, before they are
+         * processed.
+         */
+        void prepare(ECSector[] sectors);
+
+        void process(ECSector sector);
+    }
+
+
+    /**
+     * Creates the workers of the chunks.
+     */
+    interface WorkerFactory
+    {
+        Worker newWorker();
+    }
+
+
+    // Seconds before an idle thread of the pool ends
+    private static final long KEEP_ALIVE = 60;
+
+    private final String     name;
+    private volatile Workers workers;
+
+
+    ECSectorBatch(String name)
+    {
+        this.name    = name;
+        this.workers = new Workers(1, null);
+    }
+
+
+    /**
+     * Set the number of workers of the next batches.
+     *
+     * @throws IllegalArgumentException if it is not positive
+     */
+    void setWorkers(int nWorkers)
+    {
+        if (nWorkers < 1)
+            throw new IllegalArgumentException("Bad number of workers: " + nWorkers);
+
+        ThreadPoolExecutor pool = null;
+        if (nWorkers > 1) {
+            pool = new ThreadPoolExecutor(nWorkers - 1, nWorkers - 1,
+                                          KEEP_ALIVE, TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<Runnable>(),
+                                          new ThreadFactory() {
+                private int n = 0;
+
+                public synchronized Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, name + "-batch-" + n++);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+        }
+        workers = new Workers(nWorkers, pool);
+    }
+
+
+    int getWorkers()
+    {
+        return workers.count;
+    }
+
+
+    /**
+     * Process all the sectors of the batch.
+     *
+     * @return  the array of processed sectors
+     */
+    Object[] execute(final Object[] data, final WorkerFactory factory)
+    {
+        Workers w      = workers;
+        int     chunks = Math.min(w.count, data.length);
+
+        if (chunks <= 1) {
+            processChunk(data, 0, data.length, factory.newWorker(), null);
+            return data.clone();
+        }
+
+        final AtomicBoolean stop    = new AtomicBoolean();
+        List<Future<?>>     futures = new ArrayList<Future<?>>();
+        Throwable           failure = null;
+
+        try {
+            for (int c = 1; c < chunks; c++) {
+                final int first = (int) ((long) data.length * c / chunks);
+                final int last  = (int) ((long) data.length * (c + 1) / chunks);
+                futures.add(w.pool.submit(new Runnable() {
+                    public void run()
+                    {
+                        processChunk(data, first, last, factory.newWorker(), stop);
+                    }
+                }));
+            }
+            processChunk(data, 0, data.length / chunks, factory.newWorker(), stop);
+        } catch (Throwable e) {
+            failure = e;
+            stop.set(true);
+        }
+
+        // Wait for all the chunks, even if one of them failed
+        boolean interrupted = false;
+        for (Future<?> f : futures) {
+            while (true) {
+                try {
+                    f.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stop.set(true);
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = e.getCause();
+                    stop.set(true);
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (failure == null)
+                failure = new IllegalStateException("Batch interrupted");
+        }
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new IllegalStateException(failure);
+
+        return data.clone();
+    }
+
+
+    private static void processChunk(Object[] data, int first, int last,
+                                     Worker worker, AtomicBoolean stop)
+    {
+        ECSector[] sectors = new ECSector[last - first];
+        for (int n = first; n < last; n++)
+            sectors[n - first] = (ECSector) data[n];
+
+        if (stop != null && stop.get())
+            return;
+        worker.prepare(sectors);
+
+        for (ECSector sector : sectors) {
+            if (stop != null && stop.get())
+                return;
+            worker.process(sector);
+        }
+    }
+
+
+    // The number of workers and the pool used by a batch
+    private static class Workers
+    {
+        final int             count;
+        final ExecutorService pool;
+
+        Workers(int count, ExecutorService pool)
+        {
+            this.count = count;
+            this.pool  = pool;
+        }
+    }
+}
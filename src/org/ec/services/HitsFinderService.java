@@ -1,12 +1,20 @@
 package org.ec.services;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Logger;
+
 import org.jlab.coda.clara.core.CServiceParameter;
 import org.jlab.coda.clara.core.ICService;
 
-import org.ec.detector.ECGeneral;
+import org.ec.detector.ECConfig;
 import org.ec.detector.ECLayer;
 import org.ec.detector.ECLayerName;
 import org.ec.detector.ECSector;
+import org.ec.detector.ECView;
 import org.ec.util.ECHitMaps;
 import org.ec.util.ECHitsFinder;
 import org.ec.util.ECPeaksFinder;
@@ -14,6 +22,24 @@ import org.ec.util.ECPeaksFinder;
 /**
  * The <code>HitsFinderService</code> find the hits in one sector.
  * <p>
+ * The control variables are given by an {@link ECConfig} that is replaced
+ * as a whole by {@link #configure(ECConfig)}, so a call that is running
+ * keeps using the configuration it started with.
+ * <p>
+ * The batch variant of <code>executeService</code> finds the hits in many
+ * sectors with the same finders, and can split the batch between several
+ * threads.
+ * <p>
+ * The hits of the four layers of a sector with more fired strips than the
+ * variable <code>parallel_strips</code> are found in parallel, each layer
+ * with its own finders, if there is more than one processor.  The busy
+ * sectors take the longest, so this shortens the tail of the latency
+ * without slowing down the others.  The default of 200 strips, about six
+ * showers, is an estimate: forced on one processor, the tasks cost up to
+ * 5 us per sector, while six showers take 13 us one layer after the other.
+ * The gain on several processors is still to be measured with
+ * <code>test.BenchmarkParallelLayers</code>.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -24,50 +50,89 @@ import org.ec.util.ECPeaksFinder;
  */
 public class HitsFinderService implements ICService
 {
+    private static final Logger LOGGER = Logger.getLogger(HitsFinderService.class.getName());
+
+    private volatile ECConfig   config = ECConfig.DEFAULT;
+    private final ECSectorBatch batch  = new ECSectorBatch("hits");
+
+
+    /**
+     * The service parameter does not give access to the control variables,
+     * so a warning is logged and the current configuration is kept.  Use
+     * {@link #configure(ECConfig)} to change it.
+     *
+     * @param arg0  the parameter of the container
+     */
     public void configure(CServiceParameter arg0)
     {
-        // TODO Auto-generated method stub
+        if (arg0 != null)
+            LOGGER.warning("The service parameter can not be read, keeping " + config);
     }
 
 
-    public Object executeService(int arg0, Object arg1)
+    /**
+     * Set the control variables.
+     *
+     * @param config  the configuration
+     */
+    public void configure(ECConfig config)
     {
-        ECSector      sector = (ECSector) arg1;
-        ECHitMaps     maps   = new ECHitMaps();
-        ECPeaksFinder stp    = new ECPeaksFinder(sector, maps);
-        ECHitsFinder  pth    = new ECHitsFinder(sector, maps);
+        this.config = config;
+    }
 
-        for (ECLayer layer : sector.getLayerList()) {
-            if (layer.getName() == ECLayerName.COVER) {
-                layer.setMaxStrips(ECGeneral.MAX_EC_STRIPS);
-            } else {
-                layer.setMaxStrips(ECGeneral.MAX_PCAL_STRIPS);
-            }
 
-            stp.findPeaks(layer);
-            pth.initializePeakStatus(layer);
-            while (pth.calculate()) {
-                pth.findHits(layer);
-                if (layer.getNHits() > 0) {
-                    // At this point, all possible hits are identified and
-                    // paths for each hit on the peak are defined. Time for
-                    // attenuation correction
-                    stp.correctPeaks(layer);
-                    pth.correctEnergy(layer);
-                }
-            }
-            pth.correctHits(layer);
+    /**
+     * Get the current control variables.
+     *
+     * @return  the configuration
+     */
+    public ECConfig getConfig()
+    {
+        return config;
+    }
 
-        }
 
+    public Object executeService(int arg0, Object arg1)
+    {
+        ECSector sector = (ECSector) arg1;
+        new Worker(config).process(sector);
         return sector;
     }
 
 
+    /**
+     * Find the hits in a batch of sectors.  The finders and their buffers
+     * are created once for each worker of the batch, and reused for all its
+     * sectors.
+     *
+     * @param arg0  the types of the data
+     * @param arg1  the sectors
+     * @return      the array with the sectors
+     * @see         #setBatchWorkers
+     */
     public Object executeService(int[] arg0, Object[] arg1)
     {
-        // TODO Auto-generated method stub
-        return null;
+        final ECConfig config = this.config;
+        return batch.execute(arg1, new ECSectorBatch.WorkerFactory() {
+            public ECSectorBatch.Worker newWorker()
+            {
+                return new Worker(config);
+            }
+        });
+    }
+
+
+    /**
+     * Set the number of threads used by the batch variant of
+     * <code>executeService</code>.  The default is one, and the batch is
+     * processed by the calling thread.
+     *
+     * @param nWorkers  the number of threads
+     * @throws IllegalArgumentException if it is not positive
+     */
+    public void setBatchWorkers(int nWorkers)
+    {
+        batch.setWorkers(nWorkers);
     }
 
 
@@ -119,4 +184,124 @@ public class HitsFinderService implements ICService
         return null;
     }
 
+
+    // The finders of one thread, reused for many sectors.  The layers are
+    // independent, so a sector with many strips gives each layer its own
+    // finders and hit map and processes them as fork-join tasks: inside a
+    // ForkJoinPool (like the one of ECEventOrchestrator) they are forked in
+    // that pool, and otherwise in the common pool.  With only one thread in
+    // the pool the layers are always processed one after the other.
+    private static class Worker implements ECSectorBatch.Worker
+    {
+        private final ECConfig      config;
+        private final LayerFinder[] finders;
+
+        Worker(ECConfig config)
+        {
+            this.config  = config;
+            this.finders = new LayerFinder[ECLayerName.values().length];
+        }
+
+        // Nothing to do for the whole chunk
+        public void prepare(ECSector[] sectors)
+        {
+        }
+
+        @SuppressWarnings("serial")
+        public void process(final ECSector sector)
+        {
+            if (countStrips(sector) <= config.getParallelStrips() || getParallelism() < 2) {
+                LayerFinder finder = getFinder(0);
+                for (ECLayer layer : sector.getLayerList())
+                    finder.process(sector, layer);
+                return;
+            }
+
+            List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+            for (final ECLayer layer : sector.getLayerList()) {
+                final LayerFinder finder = getFinder(layer.getName().ordinal());
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute()
+                    {
+                        finder.process(sector, layer);
+                    }
+                });
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        private LayerFinder getFinder(int n)
+        {
+            if (finders[n] == null)
+                finders[n] = new LayerFinder(config);
+            return finders[n];
+        }
+
+        // The threads of the pool where the layers would be forked
+        private static int getParallelism()
+        {
+            ForkJoinPool pool = ForkJoinTask.getPool();
+            if (pool == null)
+                pool = ForkJoinPool.commonPool();
+            return pool.getParallelism();
+        }
+
+        private static int countStrips(ECSector sector)
+        {
+            int n = 0;
+            for (ECLayer layer : sector.getLayerList())
+                for (ECView view : layer.getViewList())
+                    n += view.getNStrips();
+            return n;
+        }
+    }
+
+
+    // The finders and the hit map used for one layer at a time
+    private static class LayerFinder
+    {
+        private final ECConfig  config;
+        private final ECHitMaps maps;
+        private ECPeaksFinder   stp;
+        private ECHitsFinder    pth;
+
+        LayerFinder(ECConfig config)
+        {
+            this.config = config;
+            this.maps   = new ECHitMaps();
+        }
+
+        void process(ECSector sector, ECLayer layer)
+        {
+            if (stp == null) {
+                stp = new ECPeaksFinder(sector, maps, config);
+                pth = new ECHitsFinder(sector, maps, config);
+            } else {
+                stp.setSector(sector);
+                pth.setSector(sector);
+            }
+
+            if (layer.getName() == ECLayerName.COVER) {
+                layer.setMaxStrips(config.getMaxECStrips());
+            } else {
+                layer.setMaxStrips(config.getMaxPCALStrips());
+            }
+
+            maps.clearHitLists();
+            stp.findPeaks(layer);
+            pth.initializePeakStatus(layer);
+            while (pth.calculate()) {
+                pth.findHits(layer);
+                if (layer.getNHits() > 0) {
+                    // At this point, all possible hits are identified and
+                    // paths for each hit on the peak are defined. Time for
+                    // attenuation correction
+                    stp.correctPeaks(layer);
+                    pth.correctEnergy(layer);
+                }
+            }
+            pth.correctHits(layer);
+        }
+    }
 }
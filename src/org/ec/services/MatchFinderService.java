@@ -1,6 +1,10 @@
 package org.ec.services;
 
+import java.util.logging.Logger;
+
+import org.ec.detector.ECConfig;
 import org.ec.detector.ECSector;
+import org.ec.util.ECFaceProjection;
 import org.ec.util.ECMatchFinder;
 import org.jlab.coda.clara.core.CServiceParameter;
 import org.jlab.coda.clara.core.ICService;
@@ -8,6 +12,10 @@ import org.jlab.coda.clara.core.ICService;
 /**
  * The <code>MatchFinderService</code> find matches of hits between layers.
  * <p>
+ * The batch variant of <code>executeService</code> finds the matches in
+ * many sectors with the same finder, and can split the batch between
+ * several threads.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -18,15 +26,46 @@ import org.jlab.coda.clara.core.ICService;
  */
 public class MatchFinderService implements ICService
 {
+    private static final Logger LOGGER = Logger.getLogger(MatchFinderService.class.getName());
 
-    /* (non-Javadoc)
-     * @see org.jlab.coda.clara.core.ICService#configure(org.jlab.coda.clara.core.CServiceParameter)
+    private volatile ECConfig   config = ECConfig.DEFAULT;
+    private final ECSectorBatch batch  = new ECSectorBatch("matches");
+
+
+    /**
+     * The service parameter does not give access to the control variables,
+     * so a warning is logged and the current configuration is kept.  Use
+     * {@link #configure(ECConfig)} to change it.
+     *
+     * @param arg0  the parameter of the container
      */
     @Override
     public void configure(CServiceParameter arg0)
     {
-        // TODO Auto-generated method stub
+        if (arg0 != null)
+            LOGGER.warning("The service parameter can not be read, keeping " + config);
+    }
 
+
+    /**
+     * Set the control variables.
+     *
+     * @param config  the configuration
+     */
+    public void configure(ECConfig config)
+    {
+        this.config = config;
+    }
+
+
+    /**
+     * Get the current control variables.
+     *
+     * @return  the configuration
+     */
+    public ECConfig getConfig()
+    {
+        return config;
     }
 
 
@@ -36,25 +75,49 @@ public class MatchFinderService implements ICService
     @Override
     public Object executeService(int arg0, Object arg1)
     {
-        ECSector      sector = (ECSector) arg1;
-        ECMatchFinder matches = new ECMatchFinder(sector);
-
-        matches.projectAllHits();
-        matches.matchInnerLayer();
-        matches.matchOuterLayer();
-
+        ECSector sector = (ECSector) arg1;
+        Worker   worker = new Worker(config);
+        worker.prepare(new ECSector[] { sector });
+        worker.process(sector);
         return sector;
     }
 
 
-    /* (non-Javadoc)
-     * @see org.jlab.coda.clara.core.ICService#executeService(int[], java.lang.Object[])
+    /**
+     * Find the matches in a batch of sectors.  One match finder and its
+     * buffers are created for each worker of the batch, and reused for all
+     * its sectors.  The hits of all the sectors of a worker are projected to
+     * the front face in one call, before they are matched.
+     *
+     * @param arg0  the types of the data
+     * @param arg1  the sectors
+     * @return      the array with the sectors
+     * @see         #setBatchWorkers
      */
     @Override
     public Object executeService(int[] arg0, Object[] arg1)
     {
-        // TODO Auto-generated method stub
-        return null;
+        final ECConfig config = this.config;
+        return batch.execute(arg1, new ECSectorBatch.WorkerFactory() {
+            public ECSectorBatch.Worker newWorker()
+            {
+                return new Worker(config);
+            }
+        });
+    }
+
+
+    /**
+     * Set the number of threads used by the batch variant of
+     * <code>executeService</code>.  The default is one, and the batch is
+     * processed by the calling thread.
+     *
+     * @param nWorkers  the number of threads
+     * @throws IllegalArgumentException if it is not positive
+     */
+    public void setBatchWorkers(int nWorkers)
+    {
+        batch.setWorkers(nWorkers);
     }
 
 
@@ -134,4 +197,35 @@ public class MatchFinderService implements ICService
         return null;
     }
 
+
+    // The match finder of one thread, reused for many sectors
+    private static class Worker implements ECSectorBatch.Worker
+    {
+        private final ECConfig         config;
+        private final ECFaceProjection projection;
+        private ECMatchFinder          matches;
+
+        Worker(ECConfig config)
+        {
+            this.config     = config;
+            this.projection = new ECFaceProjection();
+        }
+
+        public void prepare(ECSector[] sectors)
+        {
+            projection.project(sectors);
+        }
+
+        // The hits of the sector were projected by prepare
+        public void process(ECSector sector)
+        {
+            if (matches == null)
+                matches = new ECMatchFinder(sector, config);
+            else
+                matches.setSector(sector);
+
+            matches.matchInnerLayer();
+            matches.matchOuterLayer();
+        }
+    }
 }
@@ -7,6 +7,10 @@ import org.ec.detector.ECSector;
 /**
  * Class to transfer from <code>IJK</code> to <code>XYZ</code>.
  * <p>
+ * Each object stores the result of one transformation.  To transform many
+ * points without creating objects use the {@link ECSector#getTransform
+ * transformation} of the sector.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -17,10 +21,6 @@ import org.ec.detector.ECSector;
  */
 public class ECCoordTransfer
 {
-    // TODO Get this values from geometry
-    private static final double D2RAD = Math.PI / 180;
-    private static final double BSC_A = 25;
-
     private HashMap<String, Double> coordinates;
 
 
@@ -37,53 +37,23 @@ public class ECCoordTransfer
      */
     public ECCoordTransfer(ECSector s, double di, double dj, double dk, int iterr)
     {
-        double[]   p   = new double[3];
-        double[]   pv  = new double[3];
-        double[][] rot = new double[3][3];
-
-        rot[0][0] =  Math.cos(BSC_A * D2RAD) * Math.cos(s.getPhi() * D2RAD);
-        rot[0][1] = -Math.cos(s.getPhi() * D2RAD);
-        rot[0][2] =  Math.sin(BSC_A * D2RAD) * Math.cos(s.getPhi() * D2RAD);
-        rot[1][0] =  Math.cos(BSC_A * D2RAD) * Math.sin(s.getPhi() * D2RAD);
-        rot[1][1] =  Math.cos(s.getPhi() * D2RAD);
-        rot[1][2] =  Math.sin(BSC_A * D2RAD) * Math.sin(s.getPhi() * D2RAD);
-        rot[2][0] = -Math.sin(BSC_A * D2RAD);
-        rot[2][1] =  0;
-        rot[2][2] =  Math.cos(BSC_A * D2RAD);
-
-        p[0] = di;
-        p[1] = dj;
-        p[2] = dk;
-
-        for (int i = 0; i < 3; i++) {
-            pv[i] = 0;
-            for (int j = 0; j < 3; j++) {
-                pv[i] = pv[i] + rot[i][j] * p[j];
-            }
-        }
-
-        double dx;
-        double dy;
-        double dz;
+        ECSectorTransform t  = s.getTransform();
+        double[]          pv = new double[3];
 
         coordinates = new HashMap<String, Double>();
 
         if (iterr == 1) {
-            dx = pv[0] + s.getOrigins("x");
-            dy = pv[1] + s.getOrigins("y");
-            dz = pv[2] + s.getOrigins("z");
+            t.transformPoint(di, dj, dk, pv, 0);
 
-            coordinates.put("x", dx);
-            coordinates.put("y", dy);
-            coordinates.put("z", dz);
+            coordinates.put("x", pv[0]);
+            coordinates.put("y", pv[1]);
+            coordinates.put("z", pv[2]);
         } else {
-            dx = Math.abs(pv[0]);
-            dy = Math.abs(pv[1]);
-            dz = Math.abs(pv[2]);
+            t.transformErrors(di, dj, dk, pv, 0);
 
-            coordinates.put("dx", dx);
-            coordinates.put("dy", dy);
-            coordinates.put("dz", dz);
+            coordinates.put("dx", pv[0]);
+            coordinates.put("dy", pv[1]);
+            coordinates.put("dz", pv[2]);
         }
     }
 
@@ -1,9 +1,6 @@
 package org.ec.util;
 
-import java.util.HashMap;
-
 import org.ec.detector.ECLayer;
-import org.ec.detector.ECViewLabel;
 import org.ec.fit.ECFitPeak;
 
 /**
@@ -12,6 +9,11 @@ import org.ec.fit.ECFitPeak;
  * point in the UVW coord system. If so the <coe>(I,J)</code> coordinate are
  * calculated.
  * <p>
+ * The constructor evaluates one combination of peaks.  To evaluate many
+ * combinations of the same layer, use an {@link ECDalitzKernel} and reuse
+ * one object of this class, created with the default constructor, for the
+ * results.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -22,13 +24,27 @@ import org.ec.fit.ECFitPeak;
  */
 public class ECDalitz
 {
-    private HashMap<String, Double> projections;
+    private double   i;
+    private double   j;
+    private double   k;
+    private double   di;
+    private double   dj;
 
     private double   error;
     private double   rms;
     private boolean  isPoint;
 
 
+    /**
+     * Construct an empty object to store the results of an
+     * {@link ECDalitzKernel}.
+     */
+    public ECDalitz()
+    {
+        reset(false, 0);
+    }
+
+
     /**
      * Construct an object to evaluate the <em>Dalitz</em> condition.
      *
@@ -40,45 +56,43 @@ public class ECDalitz
      */
     public ECDalitz(ECLayer layer, ECFitPeak u, ECFitPeak v, ECFitPeak w, int iterr)
     {
-        double du = u.getDist();
-        double dv = v.getDist();
-        double dw = w.getDist();
-
-        double wu = u.getWidth();
-        double wv = v.getWidth();
-        double ww = w.getWidth();
-
-        double lu = layer.getEdgeL(ECViewLabel.U);
-        double lv = layer.getEdgeL(ECViewLabel.V);
-        double lw = layer.getEdgeL(ECViewLabel.W);
-
-        double dalitz   = (du / lu) + (dv / lv) + (dw / lw);
-        double dDalitz  = Math.pow(wu / lu, 2) + Math.pow(wv / lv, 2) + Math.pow(ww / lw, 2);
-        double maxError = 2 * Math.sqrt(dDalitz);
-
-        error   = Math.abs(dalitz - 2) / maxError;
+        new ECDalitzKernel(layer).evaluate(u, v, w, iterr, this);
+    }
 
-        isPoint = Math.abs(dalitz - 2) < maxError;
 
-        if (isPoint) {
-            double i = layer.getH() * (du / lu - dv / lv - dw / lw) / 2 + layer.getH2();
-            double j = lv * (dw / lw - dv / lv) / 2;
-            double k = layer.getDepth();
+    /**
+     * Clear the projections and set the result of a new evaluation.
+     *
+     * @param isPoint  the result of the evaluation
+     * @param error    the error of the evaluation
+     */
+    void reset(boolean isPoint, double error)
+    {
+        this.isPoint = isPoint;
+        this.error   = error;
+        this.rms     = 0;
+
+        this.i  = 0;
+        this.j  = 0;
+        this.k  = 0;
+        this.di = 0;
+        this.dj = 0;
+    }
 
-            projections.put("i", i);
-            projections.put("j", j);
-            projections.put("k", k);
 
-            if (iterr == 2) {
-                double di = Math.sqrt(Math.pow(wu / lu, 2) + Math.pow(wv / lv, 2) + Math.pow(ww / lw, 2)) * layer.getH();
-                double dj = Math.sqrt(Math.pow(wv / lv, 2) + Math.pow(ww / lw, 2)) * lv / 2;
+    void setProjections(double i, double j, double k)
+    {
+        this.i = i;
+        this.j = j;
+        this.k = k;
+    }
 
-                projections.put("di", di);
-                projections.put("dj", dj);
 
-                rms = Math.sqrt(Math.pow(di, 2) + Math.pow(dj, 2));
-            }
-        }
+    void setErrors(double di, double dj, double rms)
+    {
+        this.di  = di;
+        this.dj  = dj;
+        this.rms = rms;
     }
 
 
@@ -118,6 +132,61 @@ public class ECDalitz
     }
 
 
+    /**
+     * Get the projection of mean crossings in the <code>i</code> axis.
+     *
+     * @return  the position in the axis
+     */
+    public double getI()
+    {
+        return i;
+    }
+
+
+    /**
+     * Get the projection of mean crossings in the <code>j</code> axis.
+     *
+     * @return  the position in the axis
+     */
+    public double getJ()
+    {
+        return j;
+    }
+
+
+    /**
+     * Get the projection of mean crossings in the <code>k</code> axis.
+     *
+     * @return  the position in the axis
+     */
+    public double getK()
+    {
+        return k;
+    }
+
+
+    /**
+     * Get the error of the projection in the <code>i</code> axis.
+     *
+     * @return  the error in the axis
+     */
+    public double getDI()
+    {
+        return di;
+    }
+
+
+    /**
+     * Get the error of the projection in the <code>j</code> axis.
+     *
+     * @return  the error in the axis
+     */
+    public double getDJ()
+    {
+        return dj;
+    }
+
+
     /**
      * Get the projection of mean crossings.
      * <p>
@@ -133,9 +202,11 @@ public class ECDalitz
      */
     public double getProjection(String axis)
     {
-        if (projections.containsKey(axis))
-            return projections.get(axis);
-        else
-            return 0.0;
+        if (axis.equals("i"))   return i;
+        if (axis.equals("j"))   return j;
+        if (axis.equals("k"))   return k;
+        if (axis.equals("di"))  return di;
+        if (axis.equals("dj"))  return dj;
+        return 0.0;
     }
 }
@@ -0,0 +1,144 @@
+package org.ec.util;
+
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerGeometry;
+import org.ec.detector.ECViewLabel;
+import org.ec.fit.ECFitPeak;
+
+/**
+ * Evaluate the <em>Dalitz</em> condition for many combinations of peaks of
+ * the same layer without creating objects.
+ * <p>
+ * The layer constants (the inverse of the edge lengths and the
+ * <code>H</code> values) are read once from the {@link ECLayerGeometry}
+ * when the kernel is constructed.  Each
+ * evaluation writes its results in an {@link ECDalitz} object owned by the
+ * caller, that can be reused for all the combinations.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECDalitz
+ */
+public final class ECDalitzKernel
+{
+    private final double invLu;
+    private final double invLv;
+    private final double invLw;
+
+    private final double halfLv;
+    private final double H;
+    private final double halfH;
+    private final double H2;
+    private final double depth;
+
+
+    /**
+     * Construct a kernel for the given layer.  The geometry of the layer
+     * should not change while the kernel is used.
+     *
+     * @param layer  the layer of the sector
+     */
+    public ECDalitzKernel(ECLayer layer)
+    {
+        this(layer.getGeometry());
+    }
+
+
+    /**
+     * Construct a kernel for the given geometry.
+     *
+     * @param g  the geometry of the layer
+     */
+    public ECDalitzKernel(ECLayerGeometry g)
+    {
+        this.invLu  = g.getInvEdgeL(ECViewLabel.U);
+        this.invLv  = g.getInvEdgeL(ECViewLabel.V);
+        this.invLw  = g.getInvEdgeL(ECViewLabel.W);
+
+        this.halfLv = g.getEdgeL(ECViewLabel.V) / 2;
+        this.H      = g.getH();
+        this.halfH  = g.getH() / 2;
+        this.H2     = g.getH2();
+        this.depth  = g.getDepth();
+    }
+
+
+    /**
+     * Evaluate the <em>Dalitz</em> condition for the given peaks.
+     *
+     * @param u       the peak in the U view
+     * @param v       the peak in the V view
+     * @param w       the peak in the W view
+     * @param iterr   1 to not calculate the errors of the <code>(i,j)</code>
+     *                coordinate, 2 to do the calculation
+     * @param result  the object where the results are written
+     * @return        true if the peaks are a point, false if not
+     */
+    public boolean evaluate(ECFitPeak u, ECFitPeak v, ECFitPeak w, int iterr, ECDalitz result)
+    {
+        return evaluate(u.getDist(), u.getWidth(),
+                        v.getDist(), v.getWidth(),
+                        w.getDist(), w.getWidth(),
+                        iterr, result);
+    }
+
+
+    /**
+     * Evaluate the <em>Dalitz</em> condition for the given distances and
+     * widths of three peaks.
+     *
+     * @param du      the distance of the peak in the U view
+     * @param wu      the width of the peak in the U view
+     * @param dv      the distance of the peak in the V view
+     * @param wv      the width of the peak in the V view
+     * @param dw      the distance of the peak in the W view
+     * @param ww      the width of the peak in the W view
+     * @param iterr   1 to not calculate the errors of the <code>(i,j)</code>
+     *                coordinate, 2 to do the calculation
+     * @param result  the object where the results are written
+     * @return        true if the peaks are a point, false if not
+     */
+    public boolean evaluate(double du, double wu,
+                            double dv, double wv,
+                            double dw, double ww,
+                            int iterr, ECDalitz result)
+    {
+        double nu = du * invLu;
+        double nv = dv * invLv;
+        double nw = dw * invLw;
+
+        double ru = wu * invLu;
+        double rv = wv * invLv;
+        double rw = ww * invLw;
+
+        double dalitz   = nu + nv + nw;
+        double dDalitz  = ru * ru + rv * rv + rw * rw;
+        double maxError = 2 * Math.sqrt(dDalitz);
+        double diff     = Math.abs(dalitz - 2);
+
+        boolean isPoint = diff < maxError;
+
+        result.reset(isPoint, diff / maxError);
+
+        if (isPoint) {
+            double i = halfH * (nu - nv - nw) + H2;
+            double j = halfLv * (nw - nv);
+
+            result.setProjections(i, j, depth);
+
+            if (iterr == 2) {
+                double di = Math.sqrt(dDalitz) * H;
+                double dj = Math.sqrt(rv * rv + rw * rw) * halfLv;
+
+                result.setErrors(di, dj, Math.sqrt(di * di + dj * dj));
+            }
+        }
+
+        return isPoint;
+    }
+}
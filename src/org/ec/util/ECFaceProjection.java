@@ -0,0 +1,160 @@
+package org.ec.util;
+
+import java.util.Arrays;
+
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECSector;
+import org.ec.fit.ECFitHit;
+
+/**
+ * Class to project the hits of all the layers to the front face of EC, for
+ * one sector or for the sectors of several events at once.
+ * <p>
+ * The local coordinates of all the hits are copied to flat arrays, the
+ * projection is calculated for all of them in one loop, and the face
+ * coordinates and the thickness are copied back to the hits.  The terms
+ * that only depend on the layer (the radial shift and the thickness) are
+ * calculated once for each layer, not for each hit.  The results are the
+ * same as projecting each hit alone.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECMatchFinder#projectAllHits
+ */
+public final class ECFaceProjection
+{
+    private ECFitHit[] hits;
+    private int        nHits;
+
+    private double[]   localI;
+    private double[]   localJ;
+    private double[]   radp;
+    private double[]   thick;
+    private double[]   faceI;
+    private double[]   faceJ;
+
+
+    /**
+     * Construct an object to project hits.  The arrays are reused, they only
+     * grow when there are more hits than before.
+     */
+    public ECFaceProjection()
+    {
+        resize(64);
+    }
+
+
+    /**
+     * Project all the hits of the sector to the front face of EC.
+     *
+     * @param sector  the sector with the hits
+     */
+    public void project(ECSector sector)
+    {
+        nHits = 0;
+        gather(sector);
+        compute();
+        scatter();
+    }
+
+
+    /**
+     * Project all the hits of the given sectors to the front face of EC.  The
+     * sectors can be of different events.
+     *
+     * @param sectors  the sectors with the hits
+     */
+    public void project(ECSector[] sectors)
+    {
+        nHits = 0;
+        for (ECSector sector : sectors)
+            gather(sector);
+        compute();
+        scatter();
+    }
+
+
+    private void gather(ECSector sector)
+    {
+        int size = nHits;
+        for (ECLayer layer : sector.getLayerList())
+            size += layer.getNHits();
+        if (size > hits.length)
+            resize(Math.max(size, 2 * hits.length));
+
+        for (ECLayer layer : sector.getLayerList()) {
+            // The original code calculates costh from the direction of each
+            // hit and the vector n2sect of the sector, which is not defined
+            // here, so it is zero for all the hits.  With the real costh
+            // these terms depend on each hit and go to the loop of compute.
+            // double costh = (x * sector.getN2(1) + y * sector.getN2(2) + z * sector.getN2(3)) / norm;
+            double costh = 0;
+
+            double layerRadp  = layer.getDepth() * Math.tan(Math.acos(costh));
+            double layerThick = layer.getDepth() / costh;
+
+            for (ECFitHit hit : layer.getHitList()) {
+                hits[nHits]   = hit;
+                localI[nHits] = hit.getLocalI();
+                localJ[nHits] = hit.getLocalJ();
+                radp[nHits]   = layerRadp;
+                thick[nHits]  = layerThick;
+                nHits++;
+            }
+        }
+    }
+
+
+    private void compute()
+    {
+        for (int k = 0; k < nHits; k++) {
+            double i    = localI[k];
+            double j    = localJ[k];
+            double radm = Math.sqrt(i * i + j * j);
+
+            double ci = radm < 1E-8 ? 0 : i / radm;
+            double cj = radm < 1E-8 ? 0 : j / radm;
+
+            faceI[k] = i - radp[k] * ci;
+            faceJ[k] = j - radp[k] * cj;
+        }
+    }
+
+
+    private void scatter()
+    {
+        for (int k = 0; k < nHits; k++) {
+            hits[k].setFaceCoords(faceI[k], faceJ[k]);
+            hits[k].setThick(thick[k]);
+            hits[k] = null;
+        }
+    }
+
+
+    // Keep the hits already gathered
+    private void resize(int size)
+    {
+        if (hits == null) {
+            hits   = new ECFitHit[size];
+            localI = new double[size];
+            localJ = new double[size];
+            radp   = new double[size];
+            thick  = new double[size];
+            faceI  = new double[size];
+            faceJ  = new double[size];
+        } else {
+            hits   = Arrays.copyOf(hits, size);
+            localI = Arrays.copyOf(localI, size);
+            localJ = Arrays.copyOf(localJ, size);
+            radp   = Arrays.copyOf(radp, size);
+            thick  = Arrays.copyOf(thick, size);
+            faceI  = new double[size];
+            faceJ  = new double[size];
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.ec.util;
+
+import java.util.Arrays;
+
+import org.ec.detector.ECLayer;
+import org.ec.fit.ECFitHit;
+
+/**
+ * Uniform grid over the coordinates of the hits of one layer on the front
+ * face of EC, used to find the hits that can match a hit of other layer
+ * without checking all of them.
+ * <p>
+ * The grid is built from the face coordinates set by
+ * {@link ECMatchFinder#projectAllHits projectAllHits}, with about one hit
+ * per cell.  For a hit of the other layer and a gate on the
+ * <em>chi<sup>2</sup></em>, a hit of the grid can only pass the gate if its
+ * distance in each coordinate is lower than
+ * <code>sqrt(gate * (maxD<sup>2</sup> + d<sup>2</sup>))</code>, where
+ * <code>maxD</code> is the largest error of the hits of the grid and
+ * <code>d</code> the error of the hit.  The query returns the hits in the
+ * cells that overlap that rectangle, sorted by their position in the list of
+ * hits of the layer.  Hits with coordinates or errors that are not finite
+ * are always returned.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECMatchFinder
+ */
+public final class ECHitGrid
+{
+    // Relative margin of the search rectangle, for the rounding of the chi2
+    private static final double MARGIN = 1E-9;
+
+    private ECFitHit[] hits;
+    private int        nHits;
+
+    private double     maxDI2;
+    private double     maxDJ2;
+
+    private double     minI;
+    private double     minJ;
+    private double     invCellI;
+    private double     invCellJ;
+    private int        nCellsI;
+    private int        nCellsJ;
+
+    private int[]      cellStart;
+    private int[]      cellNext;
+    private int[]      cellHits;
+    private int[]      outside;
+    private int        nOutside;
+
+    private int[]      candidates;
+
+
+    /**
+     * Construct an empty grid.  Use {@link #build} to fill it.
+     */
+    public ECHitGrid()
+    {
+        this.hits       = new ECFitHit[0];
+        this.cellStart  = new int[2];
+        this.cellNext   = new int[1];
+        this.cellHits   = new int[0];
+        this.outside    = new int[0];
+        this.candidates = new int[0];
+    }
+
+
+    /**
+     * Fill the grid with the hits of the layer.  The grid is reused, the
+     * arrays only grow when the layer has more hits than before.
+     *
+     * @param layer  the layer with the hits
+     */
+    public void build(ECLayer layer)
+    {
+        nHits = layer.getNHits();
+        if (hits.length < nHits) {
+            hits       = new ECFitHit[nHits];
+            cellHits   = new int[nHits];
+            outside    = new int[nHits];
+            candidates = new int[nHits];
+        }
+
+        int n = 0;
+        for (ECFitHit hit : layer.getHitList())
+            hits[n++] = hit;
+
+        // Bounds of the hits with finite coordinates
+        minI   = Double.POSITIVE_INFINITY;
+        minJ   = Double.POSITIVE_INFINITY;
+        maxDI2 = 0;
+        maxDJ2 = 0;
+        double maxI = Double.NEGATIVE_INFINITY;
+        double maxJ = Double.NEGATIVE_INFINITY;
+        nOutside = 0;
+        for (int h = 0; h < nHits; h++) {
+            ECFitHit hit = hits[h];
+            double di2 = hit.getFaceDI() * hit.getFaceDI();
+            double dj2 = hit.getFaceDJ() * hit.getFaceDJ();
+            if (!isInside(hit) || !(di2 < Double.POSITIVE_INFINITY) || !(dj2 < Double.POSITIVE_INFINITY)) {
+                outside[nOutside++] = h;
+                continue;
+            }
+            if (di2 > maxDI2) maxDI2 = di2;
+            if (dj2 > maxDJ2) maxDJ2 = dj2;
+            minI = Math.min(minI, hit.getFaceI());
+            maxI = Math.max(maxI, hit.getFaceI());
+            minJ = Math.min(minJ, hit.getFaceJ());
+            maxJ = Math.max(maxJ, hit.getFaceJ());
+        }
+
+        // About one hit per cell
+        int inside = nHits - nOutside;
+        int side   = Math.max(1, (int) Math.ceil(Math.sqrt(inside)));
+        nCellsI  = maxI > minI ? side : 1;
+        nCellsJ  = maxJ > minJ ? side : 1;
+        invCellI = maxI > minI ? nCellsI / (maxI - minI) : 0;
+        invCellJ = maxJ > minJ ? nCellsJ / (maxJ - minJ) : 0;
+
+        int nCells = nCellsI * nCellsJ;
+        if (cellStart.length < nCells + 1) {
+            cellStart = new int[nCells + 1];
+            cellNext  = new int[nCells];
+        }
+        Arrays.fill(cellStart, 0, nCells + 1, 0);
+
+        // Counting sort of the hits by cell, keeping the order of the list
+        int o = 0;
+        for (int h = 0; h < nHits; h++) {
+            if (o < nOutside && outside[o] == h) {
+                o++;
+                continue;
+            }
+            cellStart[cell(hits[h]) + 1]++;
+        }
+        for (int c = 0; c < nCells; c++)
+            cellStart[c + 1] += cellStart[c];
+
+        System.arraycopy(cellStart, 0, cellNext, 0, nCells);
+        o = 0;
+        for (int h = 0; h < nHits; h++) {
+            if (o < nOutside && outside[o] == h) {
+                o++;
+                continue;
+            }
+            cellHits[cellNext[cell(hits[h])]++] = h;
+        }
+    }
+
+
+    /**
+     * Get the number of hits in the grid.
+     *
+     * @return  the number of hits
+     */
+    public int getNHits()
+    {
+        return nHits;
+    }
+
+
+    /**
+     * Get the <em>nth</em> hit of the grid, in the order of the list of hits
+     * of the layer.
+     *
+     * @param n  the position of the hit
+     * @return   the hit
+     */
+    public ECFitHit getHit(int n)
+    {
+        return hits[n];
+    }
+
+
+    /**
+     * Find the hits of the grid that can have a <em>chi<sup>2</sup></em>
+     * lower than the gate with the given hit.  The positions of the
+     * candidates are available with {@link #getCandidate}, in increasing
+     * order.
+     *
+     * @param hit   the hit of the other layer
+     * @param gate  the maximum <em>chi<sup>2</sup></em>
+     * @return      the number of candidates
+     */
+    public int query(ECFitHit hit, double gate)
+    {
+        double halfI = Math.sqrt(gate * (maxDI2 + hit.getFaceDI() * hit.getFaceDI())) * (1 + MARGIN);
+        double halfJ = Math.sqrt(gate * (maxDJ2 + hit.getFaceDJ() * hit.getFaceDJ())) * (1 + MARGIN);
+
+        if (!isInside(hit) || !(halfI < Double.POSITIVE_INFINITY) || !(halfJ < Double.POSITIVE_INFINITY)) {
+            // No bound, all the hits are candidates
+            for (int h = 0; h < nHits; h++)
+                candidates[h] = h;
+            return nHits;
+        }
+
+        int i0 = cellI(hit.getFaceI() - halfI);
+        int i1 = cellI(hit.getFaceI() + halfI);
+        int j0 = cellJ(hit.getFaceJ() - halfJ);
+        int j1 = cellJ(hit.getFaceJ() + halfJ);
+
+        int n = 0;
+        for (int ci = i0; ci <= i1; ci++) {
+            for (int cj = j0; cj <= j1; cj++) {
+                int c = ci * nCellsJ + cj;
+                for (int k = cellStart[c]; k < cellStart[c + 1]; k++)
+                    candidates[n++] = cellHits[k];
+            }
+        }
+        for (int o = 0; o < nOutside; o++)
+            candidates[n++] = outside[o];
+
+        Arrays.sort(candidates, 0, n);
+        return n;
+    }
+
+
+    /**
+     * Get the position of the <em>nth</em> candidate of the last query.
+     *
+     * @param n  the number of the candidate
+     * @return   the position of the hit in the grid
+     * @see      #getHit
+     */
+    public int getCandidate(int n)
+    {
+        return candidates[n];
+    }
+
+
+    private static boolean isInside(ECFitHit hit)
+    {
+        double i = hit.getFaceI();
+        double j = hit.getFaceJ();
+        return i - i == 0 && j - j == 0;    // false for NaN and infinite
+    }
+
+
+    private int cell(ECFitHit hit)
+    {
+        return cellI(hit.getFaceI()) * nCellsJ + cellJ(hit.getFaceJ());
+    }
+
+
+    private int cellI(double i)
+    {
+        double c = (i - minI) * invCellI;
+        if (!(c > 0)) return 0;
+        return c < nCellsI ? (int) c : nCellsI - 1;
+    }
+
+
+    private int cellJ(double j)
+    {
+        double c = (j - minJ) * invCellJ;
+        if (!(c > 0)) return 0;
+        return c < nCellsJ ? (int) c : nCellsJ - 1;
+    }
+}
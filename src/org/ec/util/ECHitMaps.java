@@ -1,10 +1,11 @@
 package org.ec.util;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 
+import org.ec.detector.ECGeneral;
+import org.ec.detector.ECViewLabel;
 import org.ec.fit.ECFitHit;
 import org.ec.fit.ECFitPeak;
 import org.ec.fit.ECPeakHit;
@@ -15,7 +16,16 @@ import org.ec.fit.ECPeakHit;
  * and give flexibility to the algorithm working with those classes.
  * <p>
  * The <code>HitsFinderService</code> use this class to have a list of hits
- * for each peak.
+ * for each peak of the current layer.
+ * <p>
+ * The peaks are identified by a dense integer index, obtained from the label
+ * of their view and their ID in the view.  The hits are stored in the order
+ * they are added as a list of <em>(peak, hit)</em> pairs, and when the map
+ * is queried that list is compacted into one array with the hits of each
+ * peak in consecutive positions, and an array of offsets giving the first
+ * position for each peak (compressed sparse row).  All the arrays are reused
+ * when the map is cleared, so the same object can be used for all the layers
+ * and events.
  * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
@@ -27,7 +37,25 @@ import org.ec.fit.ECPeakHit;
  */
 public class ECHitMaps
 {
-    HashMap<String, ArrayList<ECPeakHit>> hits;
+    // Peak IDs go from 1 to MAX_PEAKS + 1 (the last one makes the view skip)
+    private static final int PEAKS_PER_VIEW = ECGeneral.MAX_PEAKS + 1;
+    private static final int N_PEAKS        = ECViewLabel.values().length * PEAKS_PER_VIEW;
+
+    // Hits in insertion order
+    private int[]       edgePeak;
+    private ECPeakHit[] edgeHit;
+    private int         nEdges;
+
+    // Compacted hits
+    private int[]       offsets;
+    private int[]       counts;
+    private int[]       cursor;
+    private boolean[]   single;
+    private ECPeakHit[] hits;
+    private boolean     compacted;
+
+    // Peaks with a different list of hits since the last clearChanges()
+    private boolean[]   changed;
 
 
     /**
@@ -35,22 +63,54 @@ public class ECHitMaps
      */
     public ECHitMaps()
     {
-        hits = new HashMap<String, ArrayList<ECPeakHit>>();
+        int capacity = 3 * ECGeneral.MAX_HITS;
+
+        edgePeak  = new int[capacity];
+        edgeHit   = new ECPeakHit[capacity];
+        nEdges    = 0;
+
+        offsets   = new int[N_PEAKS + 1];
+        counts    = new int[N_PEAKS];
+        cursor    = new int[N_PEAKS];
+        single    = new boolean[N_PEAKS];
+        hits      = new ECPeakHit[capacity];
+        compacted = true;
+
+        changed   = new boolean[N_PEAKS];
+    }
+
+
+    /**
+     * Get the dense index of the peak in the map.
+     *
+     * @param peak  the desired peak
+     * @return      the index of the peak
+     */
+    public static int index(ECFitPeak peak)
+    {
+        return peak.getView().ordinal() * PEAKS_PER_VIEW + peak.getID() - 1;
     }
 
 
     /**
      * Add a new peak to the map.
      *
-     * Put the peak in the map using the unique key that identifies the peak
-     * in the data hierarchy.  Initialize its list of hits as empty.
+     * The peaks are indexed by the label of their view and their ID, so
+     * there is nothing to allocate.  Initialize its list of hits as empty.
      *
      * @param peak  the peak to be added
      */
     public void addPeak(ECFitPeak peak)
     {
-        String key = peak.getKey();
-        hits.put(key, new ArrayList<ECPeakHit>());
+        int p = index(peak);
+        single[p]  = false;
+        changed[p] = true;
+        for (int e = 0; e < nEdges; e++) {
+            if (edgePeak[e] == p) {
+                edgePeak[e] = -1;
+                compacted = false;
+            }
+        }
     }
 
 
@@ -64,24 +124,73 @@ public class ECHitMaps
      */
     public void addHit(ECFitHit hit)
     {
-        for (ECPeakHit ph : hit.getAllPeakHits()) {
-            ECFitPeak peak = ph.getPeak();
-            String key = peak.getKey();
-            hits.get(key).add(ph);
+        if (nEdges + 3 > edgePeak.length) {
+            int capacity = 2 * edgePeak.length;
+            edgePeak = Arrays.copyOf(edgePeak, capacity);
+            edgeHit  = Arrays.copyOf(edgeHit, capacity);
+            hits     = new ECPeakHit[capacity];
         }
+
+        for (ECViewLabel label : ECViewLabel.values()) {
+            ECPeakHit ph = hit.getPeakHit(label);
+            int p = index(ph.getPeak());
+            edgePeak[nEdges] = p;
+            edgeHit[nEdges]  = ph;
+            changed[p]       = true;
+            nEdges++;
+        }
+        compacted = false;
+    }
+
+
+    /**
+     * Remove the hit from the list of hits of each peak that compose it.
+     * The other hits of those peaks keep their order, so the lists are the
+     * same as if the hit was never added.
+     *
+     * @param hit  the hit to be removed
+     */
+    public void removeHit(ECFitHit hit)
+    {
+        for (int e = 0; e < nEdges; e++) {
+            int p = edgePeak[e];
+            if (p >= 0 && edgeHit[e].getHit() == hit) {
+                edgePeak[e] = -1;
+                edgeHit[e]  = null;
+                changed[p]  = true;
+            }
+        }
+        compacted = false;
     }
 
 
     /**
-     * Get the list of hits that are composed by the peak.
+     * Get the list of hits that are composed by the peak.  To iterate
+     * without creating any object, use {@link #getNHits} and
+     * {@link #getHit}.
      *
      * @param peak  the desired peak
      * @return      a {@link Collection} with the hits composed by the peak
      */
     public Collection<ECPeakHit> getHitList(ECFitPeak peak)
     {
-        String key = peak.getKey();
-        return Collections.unmodifiableList(hits.get(key));
+        compact();
+        int p = index(peak);
+        return Collections.unmodifiableList(Arrays.asList(hits).subList(offsets[p], offsets[p] + counts[p]));
+    }
+
+
+    /**
+     * Get the <em>nth</em> hit that is composed by the peak.
+     *
+     * @param peak  the desired peak
+     * @param n     the position of the hit in the list of the peak
+     * @return      the hit
+     */
+    public ECPeakHit getHit(ECFitPeak peak, int n)
+    {
+        compact();
+        return hits[offsets[index(peak)] + n];
     }
 
 
@@ -93,8 +202,8 @@ public class ECHitMaps
      */
     public int getNHits(ECFitPeak peak)
     {
-        String key = peak.getKey();
-        return hits.get(key).size();
+        compact();
+        return counts[index(peak)];
     }
 
 
@@ -105,22 +214,94 @@ public class ECHitMaps
      */
     public void setOneHit(ECFitPeak peak)
     {
-        String key = peak.getKey();
+        compact();
+        int p = index(peak);
+        single[p] = true;
+        if (counts[p] > 1) counts[p] = 1;
+    }
 
-        ArrayList<ECPeakHit> single = new ArrayList<ECPeakHit>();
-        single.add(hits.get(key).get(0));
 
-        hits.put(key, single);
+    /**
+     * Remove the mark of all the peaks set as part of one single hit, so
+     * their full list of hits is used again.
+     *
+     * @see  #setOneHit
+     */
+    public void clearOneHit()
+    {
+        for (int p = 0; p < N_PEAKS; p++) {
+            if (single[p]) {
+                single[p]  = false;
+                changed[p] = true;
+            }
+        }
+        compacted = false;
     }
 
 
     /**
-     * For all the mapped peaks, clear its list of hits.
+     * Check if the list of hits of the peak has changed since the last call
+     * to {@link #clearChanges}.
+     *
+     * @param peak  the desired peak
+     * @return      true if hits were added to or removed from the peak
+     */
+    public boolean isChanged(ECFitPeak peak)
+    {
+        return changed[index(peak)];
+    }
+
+
+    /**
+     * Mark the lists of hits of all the peaks as not changed.
+     */
+    public void clearChanges()
+    {
+        Arrays.fill(changed, false);
+    }
+
+
+    /**
+     * For all the mapped peaks, clear its list of hits.  The map can be
+     * reused for a new layer after calling this method.
      */
     public void clearHitLists()
     {
-        for (ArrayList<ECPeakHit> list : hits.values()) {
-            list.clear();
+        Arrays.fill(edgeHit, 0, nEdges, null);
+        Arrays.fill(single, false);
+        Arrays.fill(changed, true);
+        nEdges    = 0;
+        compacted = false;
+    }
+
+
+    private void compact()
+    {
+        if (compacted) return;
+
+        // Count the hits of each peak
+        Arrays.fill(counts, 0);
+        for (int e = 0; e < nEdges; e++) {
+            if (edgePeak[e] >= 0) counts[edgePeak[e]]++;
+        }
+
+        // Offsets of the first hit of each peak
+        offsets[0] = 0;
+        for (int p = 0; p < N_PEAKS; p++) {
+            offsets[p + 1] = offsets[p] + counts[p];
+            cursor[p]      = offsets[p];
+        }
+
+        // Fill the hits keeping the insertion order
+        for (int e = 0; e < nEdges; e++) {
+            int p = edgePeak[e];
+            if (p >= 0) hits[cursor[p]++] = edgeHit[e];
+        }
+
+        for (int p = 0; p < N_PEAKS; p++) {
+            if (single[p] && counts[p] > 1) counts[p] = 1;
         }
+
+        compacted = true;
     }
 }
@@ -1,10 +1,12 @@
 package org.ec.util;
 
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 
+import org.ec.detector.ECConfig;
 import org.ec.detector.ECGeneral;
 import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerGeometry;
 import org.ec.detector.ECLayerName;
 import org.ec.detector.ECSector;
 import org.ec.detector.ECView;
@@ -35,6 +37,17 @@ import org.ec.fit.ECPeakHit;
  * the path length, identity of the peaks, and identity of the hit is stored
  * and the threefold loop ends.
  * <p>
+ * By default the innermost loop does not visit all the <em>W</em> peaks.  The
+ * condition requires <code>du/lu + dv/lv + dw/lw</code> to be within
+ * <code>maxError</code> of 2, so for each <em>(U,V)</em> pair only the
+ * <em>W</em> peaks whose normalized distance <code>dw/lw</code> is inside a
+ * window around <code>2 - du/lu - dv/lv</code> can qualify.  The width of the
+ * window uses the largest <em>W</em> width of the layer, so it never rejects
+ * a valid combination.  The <em>W</em> peaks are sorted by normalized
+ * distance once per call, the window is found with a binary search, and the
+ * candidates are evaluated in their original order, so the hits are the same
+ * and are created in the same order as with the full threefold loop.
+ * <p>
  * Now that the path lengths are known for all three views, the control
  * returns to service, who call the second section of the {@link
  * ECPeaksFinder} algorithm, to re-calculates the peak characteristics after
@@ -53,13 +66,21 @@ import org.ec.fit.ECPeakHit;
  * each of the two hits. The code does not attempt to handle more complicated
  * events, which, of course, are topologically possible.
  * <p>
+ * When all the peaks are shared, some combinations are marked as BAD and the
+ * algorithm needs to be executed again.  By default only the hits of the BAD
+ * combinations are removed: the other hits would be found again with the
+ * same Dalitz and path results, so they are kept, and only the peaks of the
+ * removed hits are corrected again by {@link ECPeaksFinder#correctPeaks
+ * correctPeaks}.  The result is the same as clearing all the hits and
+ * searching again.
+ * <p>
  * For the <b>third section</b>, defined by the method {@link #correctHits
  * correctHits}, the hit is again checked for the <em>dalitz</em> condition,
  * using the refined (attenuation-length-corrected) centroid and RMS values;
  * at the present time no action is taken based on the results of this check.
  * Next the hits are sorted by energy, and a threshold cut is applied. This
- * threshold value is set by the TCL parameter {@link ECGeneral#HIT_THRESHOLD
- * HIT_THRESHOLD} and it is a true energy threshold since attenuation
+ * threshold value is set by the TCL parameter {@link ECConfig#getHitThreshold
+ * hit_threshold} and it is a true energy threshold since attenuation
  * corrections have already been applied. After this, a number of
  * characteristics of the hit are stored, and the method returns.
  * <p>
@@ -73,11 +94,52 @@ import org.ec.fit.ECPeakHit;
  */
 public class ECHitsFinder
 {
+    // Extra width of the window of the pruned search, in normalized units
+    private static final double WINDOW_MARGIN = 1e-9;
+    
     private ECSector  sector;
     private ECHitMaps map;
+    private ECConfig  config;
     private boolean needCalculation;
     
-    private HashMap<String, Integer> peakStatus;
+    // One bit for each combination of peaks, set if the combination is BAD
+    private long[]  peakStatus;
+    private int     nV;
+    private int     nW;
+    
+    // Reused for the result of all the Dalitz evaluations and paths
+    private ECDalitz dalitz;
+    private ECPath   path;
+    
+    // Scratch arrays for the energy fractions of shared peaks
+    private double[] sumE;
+    private double[] nValid;
+    
+    // W peaks sorted by normalized distance, for the pruned triple search
+    private boolean  pruned;
+    private double[] wKeys;
+    private int[]    wOrder;
+    private int[]    candidates;
+    
+    // Keep the valid hits when some combinations are marked as BAD
+    private boolean  incremental;
+    private boolean  keptHits;
+    private ArrayList<ECFitHit> vetoed;
+    
+    /**
+     * Construct an object to find hits from peaks, with the default
+     * configuration.  See class documentation for the algorithm
+     * explanation.
+     *
+     * @param sector  the sector object with all the data
+     * @param map     the map object with all the extra maps
+     * @see           ECSector
+     */
+    public ECHitsFinder(ECSector sector, ECHitMaps map)
+    {
+        this(sector, map, ECConfig.DEFAULT);
+    }
+    
     
     /**
      * Construct an object to find hits from peaks.  See class documentation
@@ -85,13 +147,73 @@ public class ECHitsFinder
      *
      * @param sector  the sector object with all the data
      * @param map     the map object with all the extra maps
+     * @param config  the control variables
      * @see           ECSector
      */
-    public ECHitsFinder(ECSector sector, ECHitMaps map)
+    public ECHitsFinder(ECSector sector, ECHitMaps map, ECConfig config)
     {
         this.sector = sector;
         this.map    = map;
+        this.config = config;
         this.needCalculation = true;
+        
+        int maxPeaks = ECGeneral.MAX_PEAKS + 1;
+        this.peakStatus = new long[(maxPeaks * maxPeaks * maxPeaks + 63) / 64];
+        
+        this.dalitz = new ECDalitz();
+        this.path   = new ECPath();
+        
+        this.sumE   = new double[ECGeneral.MAX_HITS];
+        this.nValid = new double[ECGeneral.MAX_HITS];
+        
+        this.pruned     = true;
+        this.wKeys      = new double[maxPeaks];
+        this.wOrder     = new int[maxPeaks];
+        this.candidates = new int[maxPeaks];
+        
+        this.incremental = true;
+        this.keptHits    = false;
+        this.vetoed      = new ArrayList<ECFitHit>();
+    }
+    
+    
+    /**
+     * Use this object for the layers of other sector.  The object and its
+     * buffers can be reused for many sectors, one at a time.
+     *
+     * @param sector  the sector object with all the data
+     */
+    public void setSector(ECSector sector)
+    {
+        this.sector = sector;
+    }
+    
+    
+    /**
+     * Select how the combinations of peaks are searched.  The pruned search
+     * gives the same hits as the full threefold loop, in the same order.
+     *
+     * @param pruned  true to search only the <em>W</em> peaks inside the
+     *                window of each <em>(U,V)</em> pair (the default), false
+     *                to check all the combinations
+     */
+    public void setPrunedSearch(boolean pruned)
+    {
+        this.pruned = pruned;
+    }
+    
+    
+    /**
+     * Select what is done when some combinations of peaks are marked as BAD.
+     * Both options give the same hits.
+     *
+     * @param incremental  true to remove only the hits of the BAD
+     *                     combinations (the default), false to clear all the
+     *                     hits and search them again
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
     }
     
     
@@ -106,41 +228,169 @@ public class ECHitsFinder
      */
     public void findHits(ECLayer layer)
     {
-        for (ECFitPeak pu : layer.getView(ECViewLabel.U).getPeakList()) {
-            for (ECFitPeak pv : layer.getView(ECViewLabel.V).getPeakList()) {
-                for (ECFitPeak pw : layer.getView(ECViewLabel.W).getPeakList()) {
-                    if (getPeakStatus(pu, pv, pw) == 0) {
-                        ECDalitz dalitz = new ECDalitz(layer, pu, pv, pw, 1);
-                        
-                        if (dalitz.isPoint() && layer.getNHits() >= ECGeneral.MAX_HITS) {
-                            // Event is skipped
-                            layer.clearHitList();
-                            return;
-                        }
-                        
-                        if (dalitz.isPoint()) {
-                            ECFitHit hit = layer.newHit(pu, pv, pw);
-                            hit.setCh2(dalitz.getError());
-                            
-                            double i = dalitz.getProjection("i");
-                            double j = dalitz.getProjection("j");
-                            
-                            ECPath path = new ECPath(layer, i, j);
-                            
-                            double u = path.getU();
-                            double v = path.getV();
-                            double w = path.getW();
-                            
-                            hit.setPaths(u, v, w);
-                            
-                            map.addHit(hit);
-                        }
+        if (keptHits) {
+            // The valid hits of the previous search are still in the layer
+            keptHits = false;
+            needCalculation = false;
+            return;
+        }
+        
+        ECLayerGeometry g      = layer.getGeometry();
+        ECDalitzKernel  kernel = new ECDalitzKernel(g);
+        
+        ECView u = layer.getView(ECViewLabel.U);
+        ECView v = layer.getView(ECViewLabel.V);
+        ECView w = layer.getView(ECViewLabel.W);
+        
+        boolean complete = pruned
+                ? findHitsPruned(layer, g, kernel, u, v, w)
+                : findHitsAll(layer, g, kernel, u, v, w);
+        
+        if (!complete) {
+            // Event is skipped
+            layer.clearHitList();
+        }
+        
+        needCalculation = false;
+    }
+    
+    
+    private boolean findHitsAll(ECLayer layer, ECLayerGeometry g, ECDalitzKernel kernel,
+                                ECView u, ECView v, ECView w)
+    {
+        for (int a = 0; a < u.getNPeaks(); a++) {
+            ECFitPeak pu = u.getPeak(a);
+            for (int b = 0; b < v.getNPeaks(); b++) {
+                ECFitPeak pv = v.getPeak(b);
+                for (int c = 0; c < w.getNPeaks(); c++) {
+                    if (!checkHit(layer, g, kernel, pu, pv, w.getPeak(c)))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    
+    private boolean findHitsPruned(ECLayer layer, ECLayerGeometry g, ECDalitzKernel kernel,
+                                   ECView u, ECView v, ECView w)
+    {
+        double invLu = g.getInvEdgeL(ECViewLabel.U);
+        double invLv = g.getInvEdgeL(ECViewLabel.V);
+        double invLw = g.getInvEdgeL(ECViewLabel.W);
+        
+        // Sort the W peaks by normalized distance (insertion sort, there are
+        // only a few peaks).  Peaks without a valid distance can not be part
+        // of a point.
+        int    nSorted = 0;
+        double maxRw   = 0;
+        for (int c = 0; c < w.getNPeaks(); c++) {
+            ECFitPeak pw  = w.getPeak(c);
+            double    key = pw.getDist() * invLw;
+            if (Double.isNaN(key))
+                continue;
+            
+            double rw = pw.getWidth() * invLw;
+            if (rw * rw > maxRw) maxRw = rw * rw;
+            
+            int k = nSorted++;
+            while (k > 0 && wKeys[k - 1] > key) {
+                wKeys[k]  = wKeys[k - 1];
+                wOrder[k] = wOrder[k - 1];
+                k--;
+            }
+            wKeys[k]  = key;
+            wOrder[k] = c;
+        }
+        
+        for (int a = 0; a < u.getNPeaks(); a++) {
+            ECFitPeak pu = u.getPeak(a);
+            double    nu = pu.getDist() * invLu;
+            double    ru = pu.getWidth() * invLu;
+            
+            for (int b = 0; b < v.getNPeaks(); b++) {
+                ECFitPeak pv = v.getPeak(b);
+                double    nv = pv.getDist() * invLv;
+                double    rv = pv.getWidth() * invLv;
+                
+                // Window of dw/lw that can satisfy the condition, with a
+                // margin for the different rounding of the kernel
+                double center = 2 - nu - nv;
+                double half   = 2 * Math.sqrt(ru * ru + rv * rv + maxRw) + WINDOW_MARGIN;
+                if (!(half < Double.POSITIVE_INFINITY))
+                    half = Double.POSITIVE_INFINITY;
+                
+                int nCandidates = 0;
+                for (int k = lowerBound(nSorted, center - half); k < nSorted; k++) {
+                    if (wKeys[k] > center + half) break;
+                    
+                    // Keep the candidates in the order of the peak list
+                    int c = wOrder[k];
+                    int m = nCandidates++;
+                    while (m > 0 && candidates[m - 1] > c) {
+                        candidates[m] = candidates[m - 1];
+                        m--;
                     }
+                    candidates[m] = c;
+                }
+                
+                for (int m = 0; m < nCandidates; m++) {
+                    if (!checkHit(layer, g, kernel, pu, pv, w.getPeak(candidates[m])))
+                        return false;
                 }
             }
         }
+        return true;
+    }
+    
+    
+    // First position of the sorted W peaks with a key not lower than the value
+    private int lowerBound(int n, double value)
+    {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (wKeys[mid] < value)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+    
+    
+    // Create the hit if the peaks are a point.  Return false if there are
+    // too many hits and the event must be skipped.
+    private boolean checkHit(ECLayer layer, ECLayerGeometry g, ECDalitzKernel kernel,
+                             ECFitPeak pu, ECFitPeak pv, ECFitPeak pw)
+    {
+        if (getPeakStatus(pu, pv, pw) != 0)
+            return true;
         
-        needCalculation = false;
+        boolean isPoint = kernel.evaluate(pu, pv, pw, 1, dalitz);
+        if (!isPoint)
+            return true;
+        
+        if (layer.getNHits() >= ECGeneral.MAX_HITS)
+            return false;
+        
+        ECFitHit hit = layer.newHit(pu, pv, pw);
+        hit.setCh2(dalitz.getError());
+        
+        double i = dalitz.getI();
+        double j = dalitz.getJ();
+        
+        path.calculate(g, i, j);
+        
+        double u = path.getU();
+        double v = path.getV();
+        double w = path.getW();
+        
+        hit.setPaths(u, v, w);
+        
+        map.addHit(hit);
+        return true;
     }
 
 
@@ -177,13 +427,16 @@ public class ECHitsFinder
         // fractions
         for (ECView view : layer.getViewList()) {
             for (ECFitPeak peak : view.getPeakList()) {
-                if (map.getNHits(peak) > 1) {
-                    double sumE0    = 0.0;
-                    double[] sumE   = new double[map.getNHits(peak)];
-                    double[] nValid = new double[map.getNHits(peak)];
+                int nHits = map.getNHits(peak);
+                if (nHits > 1) {
+                    double sumE0 = 0.0;
+                    if (sumE.length < nHits) {
+                        sumE   = new double[nHits];
+                        nValid = new double[nHits];
+                    }
                     
-                    int i = 0;
-                    for (ECPeakHit ph : map.getHitList(peak)) {
+                    for (int i = 0; i < nHits; i++) {
+                        ECPeakHit ph = map.getHit(peak, i);
                         sumE[i]   = 0.0;
                         nValid[i] = 0;
                         
@@ -199,18 +452,15 @@ public class ECHitsFinder
                         // At least one of the peaks should belong to one cluster
                         if (nValid[i] > 0) sumE[i] = sumE[i] / nValid[i];
                         sumE0 += sumE[i];
-                        i++;
                     }
                     
                     if (sumE0 <= 0) break;
                     
-                    i = 0;
-                    for (ECPeakHit ph : map.getHitList(peak)) {
-                        ph.setHitFraction(sumE[i] / sumE0);
-                        i++;
+                    for (int i = 0; i < nHits; i++) {
+                        map.getHit(peak, i).setHitFraction(sumE[i] / sumE0);
                     }
                     
-                    hitCount += map.getNHits(peak);
+                    hitCount += nHits;
                     map.setOneHit(peak);
                 }
             }
@@ -243,8 +493,12 @@ public class ECHitsFinder
             }
             
             if (needCalculation) {
-                clearAssignments();
-                layer.clearHitList();
+                if (incremental) {
+                    removeBadHits(layer);
+                } else {
+                    clearAssignments();
+                    layer.clearHitList();
+                }
             }
         }
     }
@@ -259,6 +513,8 @@ public class ECHitsFinder
      */
     public void correctHits(ECLayer layer)
     {
+        ECDalitzKernel kernel = new ECDalitzKernel(layer.getGeometry());
+        
         for (ECFitHit hit : layer.getHitList()) {
             double energy = 0;
             double time   = 0;
@@ -282,13 +538,10 @@ public class ECHitsFinder
             ECFitPeak v = hit.getPeakHit(ECViewLabel.V).getPeak();
             ECFitPeak w = hit.getPeakHit(ECViewLabel.W).getPeak();
             
-            ECDalitz dalitz = new ECDalitz(layer, u, v, w, 2);
+            kernel.evaluate(u, v, w, 2, dalitz);
             
-            hit.setLocalCoord("i",  dalitz.getProjection("i"));
-            hit.setLocalCoord("j",  dalitz.getProjection("j"));
-            hit.setLocalCoord("k",  dalitz.getProjection("k"));
-            hit.setLocalCoord("di", dalitz.getProjection("di"));
-            hit.setLocalCoord("dj", dalitz.getProjection("dj"));
+            hit.setLocalCoords(dalitz.getI(), dalitz.getJ(), dalitz.getK());
+            hit.setLocalErrors(dalitz.getDI(), dalitz.getDJ(), hit.getLocalDK());
             
             hit.setWidth(dalitz.getRms());
             hit.setCh2(dalitz.getError());
@@ -310,46 +563,18 @@ public class ECHitsFinder
             
             // TODO Can this be moved to constructors?
             hit.setNStrips(ntstripc);
-                
-            
-            // TODO Find where the hell coord. k is set
-            ECCoordTransfer ct = new ECCoordTransfer(sector,
-                                                hit.getLocalCoord("i"),
-                                                hit.getLocalCoord("j"),
-                                                hit.getLocalCoord("k"),
-                                                2);
-            
-            hit.setClasCoord("x", ct.getCoordinate("x"));
-            hit.setClasCoord("y", ct.getCoordinate("y"));
-            hit.setClasCoord("z", ct.getCoordinate("z"));
-            
-            
-            ECCoordTransfer ctd = new ECCoordTransfer(sector,
-                                            hit.getLocalCoord("di"),
-                                            hit.getLocalCoord("dj"),
-                                            hit.getLocalCoord("dk"),
-                                            2);
-            
-            hit.setClasCoord("dx", ctd.getCoordinate("dx"));
-            hit.setClasCoord("dy", ctd.getCoordinate("dy"));
-            hit.setClasCoord("dz", ctd.getCoordinate("dz"));
         }
+        
+        // TODO Find where the hell coord. k is set
+        sector.getTransform().transformHits(layer);
     }
 
     
     private void sortHits(ECLayer layer)
     {
-        // Sort hits by decreasing energy
-        layer.sortHits(new OrderByDecreasingEnergy());
-        
-        // Delete peaks with energy below the threshold
-        int cont = 0;
-        for (ECFitHit hit : layer.getHitList()) {
-            if (hit.getEnergy() < ECGeneral.HIT_THRESHOLD) break;
-            cont++;
-        }
-        
-        layer.resizeHitList(cont);
+        // Delete hits with energy below the threshold, and sort the rest by
+        // decreasing energy
+        layer.selectHits(config.getHitThreshold());
     }
 
     
@@ -370,47 +595,80 @@ public class ECHitsFinder
         map.clearHitLists();
     }
 
+    
+    // Remove the hits of the combinations marked as BAD, and leave the map
+    // as if the remaining hits were found again
+    private void removeBadHits(ECLayer layer)
+    {
+        for (ECFitHit hit : layer.getHitList()) {
+            ECFitPeak u = hit.getPeakHit(ECViewLabel.U).getPeak();
+            ECFitPeak v = hit.getPeakHit(ECViewLabel.V).getPeak();
+            ECFitPeak w = hit.getPeakHit(ECViewLabel.W).getPeak();
+            if (getPeakStatus(u, v, w) != 0)
+                vetoed.add(hit);
+        }
+        
+        for (ECFitHit hit : vetoed) {
+            layer.removeHit(hit);
+            map.removeHit(hit);
+        }
+        vetoed.clear();
+        
+        map.clearOneHit();
+        keptHits = true;
+    }
+
 
     /**
      * Initialize the algorithm.  Mark all the posible combinations of three
      * peaks as GOOD.  If the algorithm needs to be executed again to
      * recalculate the list of hits, some of the peaks combinations have
      * changed its status.
+     * <p>
+     * The status is kept in a bitset indexed by the IDs of the three peaks,
+     * sized from the peaks of the views, and reused for all the layers.
      *
      * @param layer  the layer object with the data
      */
     public void initializePeakStatus(ECLayer layer)
     {
-        for (ECFitPeak u : layer.getView(ECViewLabel.U).getPeakList())
-            for (ECFitPeak v : layer.getView(ECViewLabel.V).getPeakList())
-                for (ECFitPeak w : layer.getView(ECViewLabel.W).getPeakList())
-                    setPeakStatus(u, v, w, 0);
+        int nU = maxPeakID(layer.getView(ECViewLabel.U));
+        nV = maxPeakID(layer.getView(ECViewLabel.V));
+        nW = maxPeakID(layer.getView(ECViewLabel.W));
+        
+        Arrays.fill(peakStatus, 0, (nU * nV * nW + 63) / 64, 0L);
+        
+        needCalculation = true;
+        keptHits        = false;
     }
     
     
-    private void setPeakStatus(ECFitPeak u, ECFitPeak v, ECFitPeak w, int value) {
-        String key = u.getID() + "." + v.getID() + "." + w.getID();
-        peakStatus.put(key, value);
+    private int maxPeakID(ECView view)
+    {
+        int max = 0;
+        for (ECFitPeak peak : view.getPeakList())
+            if (peak.getID() > max) max = peak.getID();
+        return max;
     }
     
     
-    private int getPeakStatus(ECFitPeak u, ECFitPeak v, ECFitPeak w) {
-        String key = u.getID() + "." + v.getID() + "." + w.getID();
-        return peakStatus.get(key);
+    private int peakStatusIndex(ECFitPeak u, ECFitPeak v, ECFitPeak w)
+    {
+        return ((u.getID() - 1) * nV + (v.getID() - 1)) * nW + (w.getID() - 1);
     }
     
     
-    // TODO check if the order is OK
-    class OrderByDecreasingEnergy implements Comparator<ECFitHit>
-    {
-        public int compare(ECFitHit h1, ECFitHit h2)
-        {
-            if (h1.getEnergy() > h2.getEnergy())
-                return -1;
-            else if (h1.getEnergy() == h2.getEnergy())
-                return 0;
-            else
-                return 1;
-        }
+    private void setPeakStatus(ECFitPeak u, ECFitPeak v, ECFitPeak w, int value) {
+        int bit = peakStatusIndex(u, v, w);
+        if (value < 0)
+            peakStatus[bit >>> 6] |= 1L << bit;
+        else
+            peakStatus[bit >>> 6] &= ~(1L << bit);
+    }
+    
+    
+    private int getPeakStatus(ECFitPeak u, ECFitPeak v, ECFitPeak w) {
+        int bit = peakStatusIndex(u, v, w);
+        return (peakStatus[bit >>> 6] & (1L << bit)) != 0 ? -1 : 0;
     }
 }
@@ -0,0 +1,103 @@
+package org.ec.util;
+
+import org.ec.detector.ECConfig;
+
+/**
+ * Class to calculate the logarithmic weights of the strips, used to find the
+ * centroid and the moments of the peaks when
+ * {@link ECConfig#isLnWeights ln_weights} is set.
+ * <p>
+ * The weight of a strip with energy <code>E</code> is
+ * <code>ln(10000 * E)</code>.  If {@link ECConfig#isFastLnWeights
+ * fast_ln_weights} is set, the logarithm is not calculated with
+ * <code>Math.log</code>.  The argument is split in its binary exponent and
+ * its mantissa <code>m</code> in <code>[1, 2)</code>, and
+ * <code>ln(m)</code> is interpolated linearly from a table of
+ * {@value #TABLE_SIZE} intervals.  The approximation is off by default, so
+ * the peaks only change when it is asked for.
+ * <p>
+ * <b>Accuracy:</b> the error of the linear interpolation of
+ * <code>ln(m)</code> is at most <code>h<sup>2</sup> / 8</code> times the
+ * maximum of <code>|1 / m<sup>2</sup>|</code>, with
+ * <code>h = 1 / {@value #TABLE_SIZE}</code>, so the absolute error of the
+ * weight is below <code>1.2E-7</code> for any positive argument (the
+ * interpolated value is never larger than the exact one).  Zero, negative,
+ * subnormal, infinite and <em>NaN</em> arguments are calculated with
+ * <code>Math.log</code>.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ */
+public final class ECLogWeight
+{
+    public static final int     TABLE_BITS = 10;
+    public static final int     TABLE_SIZE = 1 << TABLE_BITS;
+
+    /** Bound of the absolute error of {@link #log}. */
+    public static final double  MAX_ERROR  = 1.2E-7;
+
+    private static final int    FRACTION_BITS = 52 - TABLE_BITS;
+    private static final long   FRACTION_MASK = (1L << FRACTION_BITS) - 1;
+    private static final double FRACTION_UNIT = 1.0 / (1L << FRACTION_BITS);
+    private static final long   MANTISSA_MASK = (1L << 52) - 1;
+    private static final double LN2           = Math.log(2.0);
+
+    // ln(1 + k / TABLE_SIZE), with one extra entry for the interpolation
+    private static final double[] TABLE = new double[TABLE_SIZE + 1];
+
+    static {
+        for (int k = 0; k <= TABLE_SIZE; k++)
+            TABLE[k] = Math.log(1.0 + (double) k / TABLE_SIZE);
+    }
+
+
+    private ECLogWeight()
+    {
+    }
+
+
+    /**
+     * Get the logarithmic weight of a strip with the given energy.
+     *
+     * @param energy  the energy of the strip
+     * @param fast    true to use the table, false to use
+     *                <code>Math.log</code>
+     * @return        <code>ln(10000 * energy)</code>
+     * @see           ECConfig#isFastLnWeights
+     */
+    public static double weight(double energy, boolean fast)
+    {
+        if (fast)
+            return log(10000 * energy);
+        else
+            return Math.log(10000 * energy);
+    }
+
+
+    /**
+     * Calculate the natural logarithm of the argument using the table.  See
+     * the class documentation for the accuracy.
+     *
+     * @param x  the argument
+     * @return   the logarithm of <code>x</code>
+     */
+    public static double log(double x)
+    {
+        if (!(x >= Double.MIN_NORMAL) || x == Double.POSITIVE_INFINITY)
+            return Math.log(x);
+
+        long   bits     = Double.doubleToRawLongBits(x);
+        int    exponent = (int) (bits >>> 52) - 1023;
+        long   mantissa = bits & MANTISSA_MASK;
+        int    k        = (int) (mantissa >>> FRACTION_BITS);
+        double f        = (mantissa & FRACTION_MASK) * FRACTION_UNIT;
+
+        double lo = TABLE[k];
+        return exponent * LN2 + (lo + f * (TABLE[k + 1] - lo));
+    }
+}
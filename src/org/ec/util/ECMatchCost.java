@@ -0,0 +1,235 @@
+package org.ec.util;
+
+/**
+ * Matrix with the <em>chi<sup>2</sup></em> of all the pairs of hits of two
+ * layers, used by {@link ECMatchFinder} to match the hits.
+ * <p>
+ * The cost of the pair of hits <code>(s, t)</code> is
+ * <code>(i<sub>s</sub> - i<sub>t</sub>)<sup>2</sup> / (vi<sub>s</sub> +
+ * vi<sub>t</sub>) + (j<sub>s</sub> - j<sub>t</sub>)<sup>2</sup> /
+ * (vj<sub>s</sub> + vj<sub>t</sub>)</code>, where <code>(i, j)</code> are the
+ * coordinates of the hits on the front face and <code>(vi, vj)</code> their
+ * variances.  The coordinates are given as flat arrays, one for each
+ * quantity, and the matrix is calculated by a {@link Kernel} over them.
+ * <p>
+ * If the incubator module <code>jdk.incubator.vector</code> is available
+ * (JDK 16 or newer, compiled with the <code>compile-vector</code> target
+ * and run with <code>--add-modules jdk.incubator.vector</code>), the costs
+ * are calculated with the SIMD instructions of the machine by
+ * <code>ECMatchCostVector</code>.  Else the {@link #SCALAR} kernel is
+ * used, a loop without branches nor calls.  Both kernels do the same
+ * operations on every element, so the results are exactly the same.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECMatchFinder
+ */
+public final class ECMatchCost
+{
+    /**
+     * Calculation of the costs of all the pairs of hits.  The whole matrix
+     * is calculated by one call, so that the loops of each kernel are
+     * compiled on their own.
+     */
+    public interface Kernel
+    {
+        /**
+         * Calculate the cost of all the pairs of hits, row by row.
+         *
+         * @param si     the <code>I</code> coordinates of the source hits
+         * @param sj     the <code>J</code> coordinates of the source hits
+         * @param svi    the variances of <code>I</code> of the source hits
+         * @param svj    the variances of <code>J</code> of the source hits
+         * @param nRows  the number of source hits
+         * @param ti     the <code>I</code> coordinates of the target hits
+         * @param tj     the <code>J</code> coordinates of the target hits
+         * @param tvi    the variances of <code>I</code> of the target hits
+         * @param tvj    the variances of <code>J</code> of the target hits
+         * @param nCols  the number of target hits
+         * @param out    the array for the costs, with at least
+         *               <code>nRows * nCols</code> elements
+         */
+        void compute(double[] si, double[] sj, double[] svi, double[] svj, int nRows,
+                     double[] ti, double[] tj, double[] tvi, double[] tvj, int nCols,
+                     double[] out);
+    }
+
+
+    /** The scalar kernel, always available. */
+    public static final Kernel SCALAR = new Kernel() {
+        public void compute(double[] si, double[] sj, double[] svi, double[] svj, int nRows,
+                            double[] ti, double[] tj, double[] tvi, double[] tvj, int nCols,
+                            double[] out)
+        {
+            for (int s = 0; s < nRows; s++)
+                computeRow(si[s], sj[s], svi[s], svj[s], ti, tj, tvi, tvj, nCols, out, s * nCols);
+        }
+    };
+
+    private static final Kernel VECTOR = loadVectorKernel();
+
+    private final Kernel kernel;
+    private double[]     cost;
+    private int          nRows;
+    private int          nCols;
+
+
+    /**
+     * Construct an empty matrix, calculated with the
+     * {@link #getDefaultKernel default kernel}.  Use {@link #compute} to
+     * fill it.
+     */
+    public ECMatchCost()
+    {
+        this(getDefaultKernel());
+    }
+
+
+    /**
+     * Construct an empty matrix, calculated with the given kernel.  Use
+     * {@link #compute} to fill it.
+     *
+     * @param kernel  the kernel that calculates the costs
+     */
+    public ECMatchCost(Kernel kernel)
+    {
+        this.kernel = kernel;
+        this.cost   = new double[0];
+    }
+
+
+    /**
+     * Get the kernel of the Vector API.
+     *
+     * @return  the kernel, or <code>null</code> if the module
+     *          <code>jdk.incubator.vector</code> or the compiled kernel are
+     *          not available
+     */
+    public static Kernel getVectorKernel()
+    {
+        return VECTOR;
+    }
+
+
+    /**
+     * Get the kernel used by default: the one of the Vector API if it is
+     * available, else the scalar one.
+     *
+     * @return  the default kernel
+     */
+    public static Kernel getDefaultKernel()
+    {
+        return VECTOR != null ? VECTOR : SCALAR;
+    }
+
+
+    private static Kernel loadVectorKernel()
+    {
+        try {
+            Class<?> c = Class.forName("org.ec.util.ECMatchCostVector");
+            return (Kernel) c.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            // The kernel was not compiled
+            return null;
+        } catch (LinkageError e) {
+            // The module is not available
+            return null;
+        }
+    }
+
+
+    /**
+     * Calculate the cost of all the pairs of hits.  The matrix is reused, the
+     * array only grows when there are more pairs than before.
+     *
+     * @param si     the <code>I</code> coordinates of the source hits
+     * @param sj     the <code>J</code> coordinates of the source hits
+     * @param svi    the variances of <code>I</code> of the source hits
+     * @param svj    the variances of <code>J</code> of the source hits
+     * @param nRows  the number of source hits
+     * @param ti     the <code>I</code> coordinates of the target hits
+     * @param tj     the <code>J</code> coordinates of the target hits
+     * @param tvi    the variances of <code>I</code> of the target hits
+     * @param tvj    the variances of <code>J</code> of the target hits
+     * @param nCols  the number of target hits
+     */
+    public void compute(double[] si, double[] sj, double[] svi, double[] svj, int nRows,
+                        double[] ti, double[] tj, double[] tvi, double[] tvj, int nCols)
+    {
+        if (cost.length < nRows * nCols)
+            cost = new double[nRows * nCols];
+        this.nRows = nRows;
+        this.nCols = nCols;
+
+        kernel.compute(si, sj, svi, svj, nRows, ti, tj, tvi, tvj, nCols, cost);
+    }
+
+
+    /**
+     * Calculate the cost of one hit with all the target hits, with the
+     * scalar loop.
+     *
+     * @param fi      the <code>I</code> coordinate of the hit
+     * @param fj      the <code>J</code> coordinate of the hit
+     * @param vi      the variance of <code>I</code> of the hit
+     * @param vj      the variance of <code>J</code> of the hit
+     * @param ti      the <code>I</code> coordinates of the target hits
+     * @param tj      the <code>J</code> coordinates of the target hits
+     * @param tvi     the variances of <code>I</code> of the target hits
+     * @param tvj     the variances of <code>J</code> of the target hits
+     * @param n       the number of target hits
+     * @param out     the array for the costs
+     * @param offset  the position in the array of the cost of the first
+     *                target hit
+     */
+    public static void computeRow(double fi, double fj, double vi, double vj,
+                                  double[] ti, double[] tj, double[] tvi, double[] tvj,
+                                  int n, double[] out, int offset)
+    {
+        for (int k = 0; k < n; k++) {
+            double di = fi - ti[k];
+            double dj = fj - tj[k];
+            out[offset + k] = di * di / (vi + tvi[k]) + dj * dj / (vj + tvj[k]);
+        }
+    }
+
+
+    /**
+     * Get the cost of a pair of hits.
+     *
+     * @param row  the position of the source hit
+     * @param col  the position of the target hit
+     * @return     the <em>chi<sup>2</sup></em> of the pair
+     */
+    public double get(int row, int col)
+    {
+        return cost[row * nCols + col];
+    }
+
+
+    /**
+     * Get the number of source hits of the last calculated matrix.
+     *
+     * @return  the number of rows
+     */
+    public int getNRows()
+    {
+        return nRows;
+    }
+
+
+    /**
+     * Get the number of target hits of the last calculated matrix.
+     *
+     * @return  the number of columns
+     */
+    public int getNCols()
+    {
+        return nCols;
+    }
+}
@@ -1,5 +1,6 @@
 package org.ec.util;
 
+import org.ec.detector.ECConfig;
 import org.ec.detector.ECGeneral;
 import org.ec.detector.ECLayer;
 import org.ec.detector.ECLayerName;
@@ -10,6 +11,27 @@ import org.ec.fit.ECFitHit;
  * This class is used to match hits between layers.  Assume that particles
  * trajectory are straight line starting at the origin.
  * <p>
+ * For each hit, the closest hit of the other layer is the one with the
+ * lowest <em>chi<sup>2</sup></em> of their coordinates on the front face,
+ * below a gate.  When the other layer has many hits, the candidates are
+ * taken from an {@link ECHitGrid} instead of checking all the hits.  The
+ * candidates are checked in the order of the list of hits, so the matches
+ * are the same as with the full scan.
+ * <p>
+ * If the kernel of the Vector API of {@link ECMatchCost} is available, the
+ * <em>chi<sup>2</sup></em> of all the pairs of hits of the smaller layers is
+ * calculated first in a matrix, and the greedy loop only reads it.  The
+ * vector matrix is faster than the grid up to more hits, so the grid is
+ * then used from {@link #VECTOR_GRID_MIN_HITS} hits.  Without the Vector
+ * API the hits are checked one at a time: the scalar matrix is slower than
+ * that scan.
+ * <p>
+ * All the pairs of layers are matched by the same code, following a table
+ * with the gate of each pair and how the matches and times are updated.  The
+ * face coordinates and their variances are copied to flat arrays before
+ * matching, so the <em>chi<sup>2</sup></em> of the pairs is calculated over
+ * primitive arrays.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -20,21 +42,95 @@ import org.ec.fit.ECFitHit;
  */
 public class ECMatchFinder
 {
+    /** Default minimum number of hits of a layer to use the grid index. */
+    public static final int GRID_MIN_HITS = 50;
+
+    /**
+     * Default minimum number of hits of a layer to use the grid index, when
+     * the smaller layers are matched with the cost matrix of the Vector API.
+     */
+    public static final int VECTOR_GRID_MIN_HITS = 180;
+
     ECSector sector;
+    ECConfig config;
 
     ECLayer  whole;
     ECLayer  inner;
     ECLayer  outer;
     ECLayer  cover;
 
+    // Hits of each layer, with the face coordinates and their variances
+    private ECFitHit[][] hits;
+    private int[]        nHits;
+    private double[][]   faceI;
+    private double[][]   faceJ;
+    private double[][]   varI;
+    private double[][]   varJ;
+    private double[][]   limits;
+
+    // Grid index of the hits of each layer, used for big layers
+    private ECHitGrid[]  grids;
+    private boolean[]    gridReady;
+    private int          gridMinHits;
+
+    // Reused to project the hits to the face
+    private ECFaceProjection projection;
+
+    // Chi2 of all the pairs of hits, used for small layers if there is a
+    // kernel for it
+    private ECMatchCost  costs;
+
+    // Chi2 of the last match found by findMatch
+    private double       matchChi2;
+
 
     /**
-     * Construct an object to match hits in different layers.
+     * Construct an object to match hits in different layers, with the
+     * default configuration.
      *
      * @param sector  the sector object with all the data
      * @see           ECSector
      */
     public ECMatchFinder(ECSector sector)
+    {
+        this(sector, ECConfig.DEFAULT);
+    }
+
+
+    /**
+     * Construct an object to match hits in different layers.
+     *
+     * @param sector  the sector object with all the data
+     * @param config  the control variables
+     * @see           ECSector
+     */
+    public ECMatchFinder(ECSector sector, ECConfig config)
+    {
+        this.config = config;
+        setSector(sector);
+
+        int nLayers = ECLayerName.values().length;
+        hits        = new ECFitHit[nLayers][];
+        nHits       = new int[nLayers];
+        faceI       = new double[nLayers][];
+        faceJ       = new double[nLayers][];
+        varI        = new double[nLayers][];
+        varJ        = new double[nLayers][];
+        limits      = new double[nLayers][];
+        grids       = new ECHitGrid[nLayers];
+        gridReady   = new boolean[nLayers];
+
+        setMatrixKernel(ECMatchCost.getVectorKernel());
+    }
+
+
+    /**
+     * Use this object to match the hits of other sector.  The object and its
+     * buffers can be reused for many sectors, one at a time.
+     *
+     * @param sector  the sector object with all the data
+     */
+    public void setSector(ECSector sector)
     {
         this.sector = sector;
 
@@ -46,62 +142,70 @@ public class ECMatchFinder
 
 
     /**
-     * Project all hits to the front face of EC.  Use the <code>(I,J)</code>
-     * coordinate system.
+     * Set the minimum number of hits of a layer to search its matches with a
+     * grid index instead of checking all its hits.  Both searches give the
+     * same matches.
+     *
+     * @param minHits  the minimum number of hits, or
+     *                 <code>Integer.MAX_VALUE</code> to never use the grid
      */
-    public void projectAllHits()
+    public void setGridMinHits(int minHits)
     {
-        for (ECLayer layer : sector.getLayerList()) {
-            for (ECFitHit hit : layer.getHitList()) {
-                double[] pos = new double[6];
-                pos[0] = hit.getClasCoord("x");
-                pos[1] = hit.getClasCoord("y");
-                pos[2] = hit.getClasCoord("z");
-                pos[3] = pos[0] / Math.sqrt(pos[0] * pos[0] + pos[1] * pos[1] + pos[2] * pos[2]);
-                pos[4] = pos[1] / Math.sqrt(pos[0] * pos[0] + pos[1] * pos[1] + pos[2] * pos[2]);
-                pos[5] = pos[2] / Math.sqrt(pos[0] * pos[0] + pos[1] * pos[1] + pos[2] * pos[2]);
-
-                // TODO find what the hell is n2sect
-                // double costh = pos[3] * sector.getN2(1) + pos[4] * sector.getN2(1) + pos[5] * sector.getN2(3);
-                double costh = 0;
-
-                double i    = hit.getLocalCoord("i");
-                double j    = hit.getLocalCoord("j");
-                double radm = Math.sqrt(i * i + j * j);
-
-                double ci;
-                double cj;
-                if (radm < 1E-8) {
-                    ci = 0;
-                    cj = 0;
-                } else {
-                    ci = i / radm;
-                    cj = j / radm;
-                }
+        this.gridMinHits = minHits;
+    }
 
-                double radp = layer.getDepth() * Math.tan(Math.acos(costh));
 
-                // Save the coordinates on the face of EC for later
-                hit.setFaceCoord("i", i - radp * ci);
-                hit.setFaceCoord("j", j - radp * cj);
-                hit.setThick(layer.getDepth() / costh);
-            }
+    /**
+     * Set the kernel of the cost matrix of the layers with less hits than
+     * the grid threshold, or <code>null</code> to check their hits one at a
+     * time.  The default is the kernel of the Vector API, if it is
+     * available.  The grid threshold is set to its default for the kernel.
+     * All the kernels give the same matches.
+     *
+     * @param kernel  the kernel, or <code>null</code> for none
+     * @see           ECMatchCost#getVectorKernel
+     */
+    public void setMatrixKernel(ECMatchCost.Kernel kernel)
+    {
+        if (kernel == null) {
+            costs       = null;
+            gridMinHits = GRID_MIN_HITS;
+        } else {
+            costs       = new ECMatchCost(kernel);
+            gridMinHits = kernel == ECMatchCost.getVectorKernel() ? VECTOR_GRID_MIN_HITS
+                                                                  : GRID_MIN_HITS;
         }
     }
 
 
+    /**
+     * Project all hits to the front face of EC.  Use the <code>(I,J)</code>
+     * coordinate system.
+     *
+     * @see ECFaceProjection
+     */
+    public void projectAllHits()
+    {
+        if (projection == null)
+            projection = new ECFaceProjection();
+        projection.project(sector);
+    }
+
+
     /**
      * Match hits in inner layer.  Assumption is that every inner hit should
      * associate with whole hit, but not necessary whit outer.
      */
     public void matchInnerLayer()
     {
+        prepareLayers();
+
         // First match inners with whole.
-        matchInnerWithWhole();
-        matchInnerWithOuter();
+        matchLayers(MatchRule.INNER_WHOLE);
+        matchLayers(MatchRule.INNER_OUTER);
 
         // These for the preshower detector.  Matching will be done only with inner.
-        matchInnerWithCover();
+        matchLayers(MatchRule.INNER_COVER);
     }
 
 
@@ -111,281 +215,253 @@ public class ECMatchFinder
      */
     public void matchOuterLayer()
     {
-        matchOuterWithWhole();
+        prepareLayers();
+
+        matchLayers(MatchRule.OUTER_WHOLE);
     }
 
 
-    private void matchInnerWithWhole()
+    /*
+     * The rules to match the hits of a source layer with a target layer.
+     *
+     * gate      maximum chi2 of a match
+     * replace   the hit of the source layer already matched with the found
+     *           target hit loses its match only if it is farther than the
+     *           new one (otherwise it always loses it)
+     * viaInner  the target hit is also matched with the whole hit of the
+     *           source hit, and the time of the whole hit is the energy
+     *           weighted time of both hits (otherwise the time of the target
+     *           hit is the time of the source hit)
+     */
+    private enum MatchRule
     {
-        if (inner.getNHits() > 0 && whole.getNHits() > 0) {
-            for (ECFitHit innerHit : inner.getHitList()) {
-                if (innerHit.getMatch(whole) != null) continue;
+        INNER_WHOLE (ECLayerName.INNER, ECLayerName.WHOLE, -1, true,  false),
+        INNER_OUTER (ECLayerName.INNER, ECLayerName.OUTER, 20, true,  true),
+        INNER_COVER (ECLayerName.INNER, ECLayerName.COVER, 20, false, true),
+        OUTER_WHOLE (ECLayerName.OUTER, ECLayerName.WHOLE, 20, false, false);
+
+        final ECLayerName source;
+        final ECLayerName target;
+        final double      gate;
+        final boolean     replace;
+        final boolean     viaInner;
+
+        private MatchRule(ECLayerName source, ECLayerName target, double gate,
+                          boolean replace, boolean viaInner)
+        {
+            this.source   = source;
+            this.target   = target;
+            this.gate     = gate;
+            this.replace  = replace;
+            this.viaInner = viaInner;
+        }
 
-                double closest = ECGeneral.EC_MATCH;
-                double closer  = closest;
+        // The gate of the inner and whole layers is a TCL variable
+        double getGate(ECConfig config)
+        {
+            return gate < 0 ? config.getECMatch() : gate;
+        }
+    }
 
-                ECFitHit wholeMatch = null;
 
-                for (ECFitHit wholeHit : whole.getHitList()) {
-                    if (wholeHit.getMatch(inner) != null) {
-                        closest = Math.min(closest, wholeHit.getC2Match(inner));
-                    }
+    private void matchLayers(MatchRule rule)
+    {
+        int     s      = rule.source.ordinal();
+        int     t      = rule.target.ordinal();
+        ECLayer source = sector.getLayer(rule.source);
+        ECLayer target = sector.getLayer(rule.target);
+
+        if (nHits[s] == 0 || nHits[t] == 0)
+            return;
+
+        // Current chi2 of the target hits already matched with the source
+        double[] limit = limits[t];
+        for (int k = 0; k < nHits[t]; k++) {
+            ECFitHit other = hits[t][k];
+            limit[k] = other.getMatch(source) != null ? other.getC2Match(source)
+                                                      : Double.POSITIVE_INFINITY;
+        }
 
-                    double idiff = Math.pow(innerHit.getFaceCoord("i") - wholeHit.getFaceCoord("i"), 2) /
-                                    (Math.pow(wholeHit.getFaceCoord("di"), 2) + Math.pow(innerHit.getFaceCoord("di"), 2));
-                    double jdiff = Math.pow(wholeHit.getFaceCoord("j") - wholeHit.getFaceCoord("j"), 2) /
-                                    (Math.pow(wholeHit.getFaceCoord("dj"), 2) + Math.pow(innerHit.getFaceCoord("dj"), 2));
-                    double diff  = idiff + jdiff;
-
-                    if (diff < closest) {
-                        closest    = diff;
-                        closer     = closest;
-                        wholeMatch = wholeHit;
-                    } else {
-                        closest    = closer;
+        // Small layers: chi2 of all the pairs at once
+        if (costs != null && nHits[t] < gridMinHits)
+            costs.compute(faceI[s], faceJ[s], varI[s], varJ[s], nHits[s],
+                          faceI[t], faceJ[t], varI[t], varJ[t], nHits[t]);
+
+        double gate = rule.getGate(config);
+        for (int h = 0; h < nHits[s]; h++) {
+            ECFitHit hit = hits[s][h];
+            if (hit.getMatch(target) != null) continue;
+
+            int k = findMatch(h, s, t, gate);
+            if (k < 0) continue;
+
+            ECFitHit match   = hits[t][k];
+            double   closest = matchChi2;
+
+            ECFitHit oldMatch = match.getMatch(source);
+            if (oldMatch != null) {
+                if (!rule.replace || chi2(hit, oldMatch) < closest) {
+                    sector.substractMatch(source, target);
+                    oldMatch.setMatch(target, null);
+
+                    ECFitHit wholeMatch = match.getMatch(whole);
+                    if (rule.viaInner && wholeMatch != null) {
+                        sector.substractMatch(target, whole);
+                        match.setMatch(whole, null);
+                        wholeMatch.setMatch(target, null);
                     }
-                }  // End loop over hits of whole
+                }
+            }
 
+            sector.addMatch(source, target);
+            hit.setMatch(target, match);
+            hit.setC2Match(target, closest);
+            match.setMatch(source, hit);
+            match.setC2Match(source, closest);
+            limit[k] = closest;
+
+            if (rule.viaInner) {
+                ECFitHit wholeMatch = hit.getMatch(whole);
                 if (wholeMatch != null) {
-                    ECFitHit innerMatch = wholeMatch.getMatch(inner);
-                    if (innerMatch != null) {
-                        double idiff = Math.pow(innerHit.getFaceCoord("i") - innerMatch.getFaceCoord("i"), 2) /
-                                        (Math.pow(innerMatch.getFaceCoord("di"), 2) + Math.pow(innerHit.getFaceCoord("di"), 2));
-                        double jdiff = Math.pow(innerHit.getFaceCoord("j") - innerMatch.getFaceCoord("j"), 2) /
-                                        (Math.pow(innerMatch.getFaceCoord("dj"), 2) + Math.pow(innerHit.getFaceCoord("dj"), 2));
-                        double diff  = idiff + jdiff;
-
-                        if (diff < closest) {
-                            sector.substractMatch(inner, whole);
-                            innerMatch.setMatch(whole, null);
-                        }
-                    }
+                    sector.addMatch(target, whole);
+                    match.setMatch(whole, wholeMatch);
+                    wholeMatch.setMatch(target, match);
+
+                    double diff = chi2(wholeMatch, match);
 
-                    sector.addMatch(inner, whole);
-                    innerHit.setMatch(whole, wholeMatch);
-                    innerHit.setC2Match(whole, closest);
-                    wholeMatch.setMatch(inner, innerHit);
-                    wholeMatch.setC2Match(inner, closest);
+                    match.setC2Match(whole, diff);
+                    wholeMatch.setC2Match(target, diff);
 
-                    double time = innerHit.getTime() - innerHit.getThick();
+                    double timeHit   = (hit.getTime()   - hit.getThick()   / ECGeneral.SPEED_OF_LIGHT) * hit.getEnergy();
+                    double timeMatch = (match.getTime() - match.getThick() / ECGeneral.SPEED_OF_LIGHT) * match.getEnergy();
+                    double sumEnergy = hit.getEnergy() + match.getEnergy();
+
+                    double time = (timeHit + timeMatch) / sumEnergy;
                     wholeMatch.setTime(time);
                 }
-            } // End loop over hits of inner
+            } else {
+                double time = hit.getTime() - hit.getThick();
+                match.setTime(time);
+            }
         }
     }
 
 
-    private void matchInnerWithOuter()
+    /**
+     * Find the closest hit of the target layer to the given hit of the
+     * source layer, with a <em>chi<sup>2</sup></em> lower than the gate.  A
+     * target hit already matched with other hit of the source layer is only
+     * taken if the new <em>chi<sup>2</sup></em> is lower than the one of its
+     * current match.  If two hits have the same <em>chi<sup>2</sup></em>,
+     * the first one in the list is taken.  The <em>chi<sup>2</sup></em> of
+     * the found hit, or the gate if there is none, is left in
+     * <code>matchChi2</code>.
+     */
+    private int findMatch(int h, int s, int t, double gate)
     {
-        if (inner.getNHits() > 0 && outer.getNHits() > 0) {
-            for (ECFitHit innerHit : inner.getHitList()) {
-                if (innerHit.getMatch(outer) != null) continue;
-
-                double closest = 20;
-                double closer  = closest;
-
-                ECFitHit outerMatch = null;
-
-                for (ECFitHit outerHit : outer.getHitList()) {
-                    if (outerHit.getMatch(inner) != null) {
-                        closest = Math.min(closest, outerHit.getC2Match(inner));
-                    }
-
-                    double idiff = Math.pow(innerHit.getFaceCoord("i") - outerHit.getFaceCoord("i"), 2) /
-                                    (Math.pow(outerHit.getFaceCoord("di"), 2) + Math.pow(innerHit.getFaceCoord("di"), 2));
-                    double jdiff = Math.pow(innerHit.getFaceCoord("j") - outerHit.getFaceCoord("j"), 2) /
-                                    (Math.pow(outerHit.getFaceCoord("dj"), 2) + Math.pow(innerHit.getFaceCoord("dj"), 2));
-                    double diff  = idiff + jdiff;
-
-                    if (diff < closest) {
-                        closest    = diff;
-                        closer     = closest;
-                        outerMatch = outerHit;
-                    } else {
-                        closest    = closer;
-                    }
-                }  // End loop over hits of outer
-
-                if (outerMatch != null) {
-                    ECFitHit innerMatch = outerMatch.getMatch(inner);
-                    if (innerMatch != null) {
-                        double idiff = Math.pow(innerHit.getFaceCoord("i") - innerMatch.getFaceCoord("i"), 2) /
-                                        (Math.pow(innerMatch.getFaceCoord("di"), 2) + Math.pow(innerHit.getFaceCoord("di"), 2));
-                        double jdiff = Math.pow(innerHit.getFaceCoord("j") - innerMatch.getFaceCoord("j"), 2) /
-                                        (Math.pow(innerMatch.getFaceCoord("dj"), 2) + Math.pow(innerHit.getFaceCoord("dj"), 2));
-                        double diff  = idiff + jdiff;
-
-                        if (diff < closest) {
-                            sector.substractMatch(inner, outer);
-                            innerMatch.setMatch(outer, null);
-
-                            ECFitHit wholeMatch = outerMatch.getMatch(whole);
-                            if (wholeMatch != null) {
-                                sector.substractMatch(outer, whole);
-                                outerMatch.setMatch(whole, null);
-                                wholeMatch.setMatch(outer, null);
-                            }
-                        }
-                    }
-
-                    sector.addMatch(inner, outer);
-                    innerHit.setMatch(outer, outerMatch);
-                    innerHit.setC2Match(outer, closest);
-                    outerMatch.setMatch(inner, innerHit);
-                    outerMatch.setC2Match(inner, closest);
-
-                    ECFitHit wholeMatch = innerHit.getMatch(whole);
-                    if (wholeMatch != null) {
-                        sector.addMatch(outer, whole);
-                        outerMatch.setMatch(whole, wholeMatch);
-                        wholeMatch.setMatch(outer, outerMatch);
-
-                        double idiff = Math.pow(wholeMatch.getFaceCoord("i") - outerMatch.getFaceCoord("i"), 2) /
-                                        (Math.pow(wholeMatch.getFaceCoord("di"), 2) + Math.pow(outerMatch.getFaceCoord("di"), 2));
-                        double jdiff = Math.pow(wholeMatch.getFaceCoord("j") - outerMatch.getFaceCoord("j"), 2) /
-                                        (Math.pow(outerMatch.getFaceCoord("dj"), 2) + Math.pow(wholeMatch.getFaceCoord("dj"), 2));
-                        double diff  = idiff + jdiff;
-
-                        outerMatch.setC2Match(whole, diff);
-                        wholeMatch.setC2Match(outer, diff);
-
-                        double timeInner = (innerHit.getTime()   - innerHit.getThick()   / ECGeneral.SPEED_OF_LIGHT) * innerHit.getEnergy();
-                        double timeOuter = (outerMatch.getTime() - outerMatch.getThick() / ECGeneral.SPEED_OF_LIGHT) * outerMatch.getEnergy();
-                        double sumEnergy = innerHit.getEnergy() + outerMatch.getEnergy();
-
-                        double time = (timeInner + timeOuter) / sumEnergy;
-                        wholeMatch.setTime(time);
-                    }
+        double   fi    = faceI[s][h];
+        double   fj    = faceJ[s][h];
+        double   vi    = varI[s][h];
+        double   vj    = varJ[s][h];
+
+        double[] ti    = faceI[t];
+        double[] tj    = faceJ[t];
+        double[] tvi   = varI[t];
+        double[] tvj   = varJ[t];
+        double[] limit = limits[t];
+
+        int    match   = -1;
+        double closest = gate;
+
+        if (costs != null && nHits[t] < gridMinHits) {
+            for (int k = 0; k < nHits[t]; k++) {
+                double diff = costs.get(h, k);
+                if (diff < closest && diff < limit[k]) {
+                    closest = diff;
+                    match   = k;
                 }
-            }  // End loop over hits of inner
+            }
+        } else if (nHits[t] < gridMinHits) {
+            for (int k = 0; k < nHits[t]; k++) {
+                double di   = fi - ti[k];
+                double dj   = fj - tj[k];
+                double diff = di * di / (vi + tvi[k]) + dj * dj / (vj + tvj[k]);
+                if (diff < closest && diff < limit[k]) {
+                    closest = diff;
+                    match   = k;
+                }
+            }
+        } else {
+            ECHitGrid grid = getGrid(t);
+            int nCandidates = grid.query(hits[s][h], gate);
+            for (int n = 0; n < nCandidates; n++) {
+                int    k    = grid.getCandidate(n);
+                double di   = fi - ti[k];
+                double dj   = fj - tj[k];
+                double diff = di * di / (vi + tvi[k]) + dj * dj / (vj + tvj[k]);
+                if (diff < closest && diff < limit[k]) {
+                    closest = diff;
+                    match   = k;
+                }
+            }
         }
+
+        matchChi2 = closest;
+        return match;
     }
 
 
-    private void matchInnerWithCover()
+    private static double chi2(ECFitHit h1, ECFitHit h2)
     {
-        if (inner.getNHits() > 0 && cover.getNHits() > 0) {
-            for (ECFitHit innerHit : inner.getHitList()) {
-                if (innerHit.getMatch(cover) != null) continue;
+        double di  = h1.getFaceI() - h2.getFaceI();
+        double dj  = h1.getFaceJ() - h2.getFaceJ();
+        double di2 = h1.getFaceDI() * h1.getFaceDI() + h2.getFaceDI() * h2.getFaceDI();
+        double dj2 = h1.getFaceDJ() * h1.getFaceDJ() + h2.getFaceDJ() * h2.getFaceDJ();
 
-                double closest = 20;
-                double closer  = closest;
+        return di * di / di2 + dj * dj / dj2;
+    }
 
-                ECFitHit coverMatch = null;
 
-                for (ECFitHit coverHit : cover.getHitList()) {
-                    if (coverHit.getMatch(inner) != null) {
-                        closest = Math.min(closest, coverHit.getC2Match(inner));
-                    }
-                    double idiff = Math.pow(innerHit.getFaceCoord("i") - coverHit.getFaceCoord("i"), 2) /
-                                    (Math.pow(coverHit.getFaceCoord("di"), 2) + Math.pow(innerHit.getFaceCoord("di"), 2));
-                    double jdiff = Math.pow(innerHit.getFaceCoord("j") - coverHit.getFaceCoord("j"), 2) /
-                                    (Math.pow(coverHit.getFaceCoord("dj"), 2) + Math.pow(innerHit.getFaceCoord("dj"), 2));
-                    double diff  = idiff + jdiff;
-
-                    if (diff < closest) {
-                        closest    = diff;
-                        closer     = closest;
-                        coverMatch = coverHit;
-                    } else {
-                        closest    = closer;
-                    }
-                }  // End loop over hits of cover
-
-                if (coverMatch != null) {
-                    ECFitHit innerMatch = coverMatch.getMatch(inner);
-                    if (innerMatch != null) {
-                        sector.substractMatch(inner, cover);
-                        innerMatch.setMatch(cover, null);
-                        ECFitHit wholeMatch = coverMatch.getMatch(whole);
-                        if (wholeMatch != null) {
-                            sector.substractMatch(cover, whole);
-                            coverMatch.setMatch(whole, null);
-                            wholeMatch.setMatch(cover, null);
-                        }
-                    }
+    // Copy the face coordinates and their variances of the hits of all the
+    // layers to flat arrays, and forget the old grids
+    private void prepareLayers()
+    {
+        for (ECLayer layer : sector.getLayerList()) {
+            int l = layer.getName().ordinal();
+            int n = layer.getNHits();
+            if (hits[l] == null || hits[l].length < n) {
+                int size  = Math.max(n, 16);
+                hits[l]   = new ECFitHit[size];
+                faceI[l]  = new double[size];
+                faceJ[l]  = new double[size];
+                varI[l]   = new double[size];
+                varJ[l]   = new double[size];
+                limits[l] = new double[size];
+            }
 
-                    sector.addMatch(inner, cover);
-                    innerHit.setMatch(cover, coverMatch);
-                    innerHit.setC2Match(cover, closest);
-                    coverMatch.setMatch(inner, innerHit);
-                    coverMatch.setC2Match(inner, closest);
-
-                    ECFitHit wholeMatch = innerHit.getMatch(whole);
-                    if (wholeMatch != null) {
-                        sector.addMatch(cover, whole);
-                        coverMatch.setMatch(whole, wholeMatch);
-                        wholeMatch.setMatch(cover, coverMatch);
-
-                        double idiff = Math.pow(wholeMatch.getFaceCoord("i") - coverMatch.getFaceCoord("i"), 2) /
-                                        (Math.pow(wholeMatch.getFaceCoord("di"), 2) + Math.pow(coverMatch.getFaceCoord("di"), 2));
-                        double jdiff = Math.pow(wholeMatch.getFaceCoord("j") - coverMatch.getFaceCoord("j"), 2) /
-                                        (Math.pow(coverMatch.getFaceCoord("dj"), 2) + Math.pow(wholeMatch.getFaceCoord("dj"), 2));
-                        double diff  = idiff + jdiff;
-
-                        coverMatch.setC2Match(whole, diff);
-                        wholeMatch.setC2Match(cover, diff);
-
-                        double timeInner = (innerHit.getTime()   - innerHit.getThick()   / ECGeneral.SPEED_OF_LIGHT) * innerHit.getEnergy();
-                        double timeCover = (coverMatch.getTime() - coverMatch.getThick() / ECGeneral.SPEED_OF_LIGHT) * coverMatch.getEnergy();
-                        double sumEnergy = innerHit.getEnergy() + coverMatch.getEnergy();
-
-                        double time = (timeInner + timeCover) / sumEnergy;
-                        wholeMatch.setTime(time);
-                    }
-                }
-            } // End loop over hits of inner
+            int k = 0;
+            for (ECFitHit hit : layer.getHitList()) {
+                hits[l][k]  = hit;
+                faceI[l][k] = hit.getFaceI();
+                faceJ[l][k] = hit.getFaceJ();
+                varI[l][k]  = hit.getFaceDI() * hit.getFaceDI();
+                varJ[l][k]  = hit.getFaceDJ() * hit.getFaceDJ();
+                k++;
+            }
+            nHits[l]     = n;
+            gridReady[l] = false;
         }
     }
 
 
-    private void matchOuterWithWhole()
+    private ECHitGrid getGrid(int l)
     {
-        if (outer.getNHits() > 0 && whole.getNHits() > 0) {
-            for (ECFitHit outerHit : outer.getHitList()) {
-                if (outerHit.getMatch(whole) != null) continue;
-
-                double closest = 20;
-                double closer  = closest;
-
-                ECFitHit wholeMatch = null;
-
-                for (ECFitHit wholeHit : whole.getHitList()) {
-                    if (wholeHit.getMatch(outer) != null) {
-                        closest = Math.min(closest, wholeHit.getC2Match(outer));
-                    }
-                    double idiff = Math.pow(outerHit.getFaceCoord("i") - wholeHit.getFaceCoord("i"), 2) /
-                                    (Math.pow(wholeHit.getFaceCoord("di"), 2) + Math.pow(outerHit.getFaceCoord("di"), 2));
-                    double jdiff = Math.pow(outerHit.getFaceCoord("j") - wholeHit.getFaceCoord("j"), 2) /
-                                    (Math.pow(wholeHit.getFaceCoord("dj"), 2) + Math.pow(outerHit.getFaceCoord("dj"), 2));
-                    double diff  = idiff + jdiff;
-
-                    if (diff < closest) {
-                        closest    = diff;
-                        closer     = closest;
-                        wholeMatch = wholeHit;
-                    } else {
-                        closest    = closer;
-                    }
-                } // End loop over hits of whole
-
-                if (wholeMatch != null) {
-                    ECFitHit outerMatch = wholeMatch.getMatch(outer);
-                    if (outerMatch != null) {
-                        sector.substractMatch(outer, whole);
-                        outerMatch.setMatch(whole, null);
-                    }
-
-                    sector.addMatch(outer, whole);
-                    outerHit.setMatch(whole, wholeMatch);
-                    outerHit.setC2Match(whole, closest);
-                    wholeMatch.setMatch(outer, outerHit);
-                    wholeMatch.setC2Match(outer, closest);
-                }
-
-                double time = outerHit.getTime() - outerHit.getThick();
-                wholeMatch.setTime(time);
-            } // End loop over hits of outer
+        if (grids[l] == null)
+            grids[l] = new ECHitGrid();
+        if (!gridReady[l]) {
+            grids[l].build(sector.getLayer(ECLayerName.values()[l]));
+            gridReady[l] = true;
         }
+        return grids[l];
     }
 }
@@ -0,0 +1,195 @@
+package org.ec.util;
+
+import org.ec.detector.ECConfig;
+import org.ec.detector.ECStrip;
+import org.ec.fit.ECFitPeak;
+
+/**
+ * Class to calculate the weighted centroid and the central moments of the
+ * distribution of the strips of a peak.
+ * <p>
+ * The sum of the weights, the centroid and the central moments 2 to 4 are
+ * all updated at each strip, so one pass over the strips is enough.  The
+ * moments are accumulated around the current centroid with the one-point
+ * update of the pairwise formulas by P&eacute;bay (2008), instead of accumulating
+ * the raw sums of the powers of the position, so they do not lose precision
+ * when the centroid is far from the origin.  The same object can be reused
+ * for all the peaks calling {@link #clear} first.
+ * <p>
+ * Points with weight zero or lower are ignored.  If there are no points, the
+ * centroid and the moments are zero.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ */
+public final class ECMoments
+{
+    private final boolean lnWeights;
+    private final boolean fastLnWeights;
+
+    private double sumWeights;
+    private double centroid;
+    private double sum2;
+    private double sum3;
+    private double sum4;
+
+
+    /**
+     * Construct an object with no points, with the default weights of the
+     * strips.
+     */
+    public ECMoments()
+    {
+        this(ECConfig.DEFAULT);
+    }
+
+
+    /**
+     * Construct an object with no points, with the weights of the strips
+     * given by the configuration.
+     *
+     * @param config  the configuration
+     */
+    public ECMoments(ECConfig config)
+    {
+        this.lnWeights     = config.isLnWeights();
+        this.fastLnWeights = config.isFastLnWeights();
+        clear();
+    }
+
+
+    /**
+     * Remove all the points.
+     */
+    public void clear()
+    {
+        sumWeights = 0;
+        centroid   = 0;
+        sum2       = 0;
+        sum3       = 0;
+        sum4       = 0;
+    }
+
+
+    /**
+     * Get the weight of a strip with the given energy.  If
+     * {@link ECConfig#isLnWeights ln_weights} is set, it is the logarithmic
+     * weight given by {@link ECLogWeight}, or zero if that is negative.
+     * Otherwise it is the energy.
+     *
+     * @param energy  the energy of the strip
+     * @return        the weight of the strip
+     */
+    public double stripWeight(double energy)
+    {
+        if (lnWeights) {
+            double w = ECLogWeight.weight(energy, fastLnWeights);
+            return w > 0 ? w : 0;
+        } else {
+            return energy;
+        }
+    }
+
+
+    /**
+     * Add a new point to the distribution.
+     *
+     * @param x  the position of the point
+     * @param w  the weight of the point
+     */
+    public void add(double x, double w)
+    {
+        if (!(w > 0)) return;
+
+        double oldWeights = sumWeights;
+        double newWeights = oldWeights + w;
+
+        double delta  = x - centroid;
+        double deltaN = delta * w / newWeights;       // change of the centroid
+        double term   = delta * deltaN * oldWeights;  // delta^2 * W_A * w / W
+
+        sum4 += term * deltaN * deltaN * (oldWeights * oldWeights - oldWeights * w + w * w) / (w * w)
+              + 6 * deltaN * deltaN * sum2
+              - 4 * deltaN * sum3;
+        sum3 += term * deltaN * (oldWeights - w) / w
+              - 3 * deltaN * sum2;
+        sum2 += term;
+
+        centroid   += deltaN;
+        sumWeights  = newWeights;
+    }
+
+
+    /**
+     * Add all the strips of the peak, with their positions along the axis
+     * and their weights given by {@link #stripWeight}.
+     *
+     * @param peak  the peak with the strips
+     * @param swId  the width of the strips
+     */
+    public void addStrips(ECFitPeak peak, double swId)
+    {
+        for (ECStrip strip : peak.getStripList())
+            add(stripPosition(strip, swId), stripWeight(strip.getEnergy()));
+    }
+
+
+    /**
+     * Get the position of the center of the strip along the axis.
+     *
+     * @param strip  the strip
+     * @param swId   the width of the strips
+     * @return       the position of the strip
+     */
+    public static double stripPosition(ECStrip strip, double swId)
+    {
+        return strip.getID() * swId - swId / 2;
+    }
+
+
+    /**
+     * Get the sum of the weights of the points.
+     *
+     * @return  the sum of the weights
+     */
+    public double getSumWeights()
+    {
+        return sumWeights;
+    }
+
+
+    /**
+     * Get the weighted mean of the positions (the first moment).
+     *
+     * @return  the centroid
+     */
+    public double getCentroid()
+    {
+        return centroid;
+    }
+
+
+    /**
+     * Get the <em>nth</em> central moment, normalized by the sum of the
+     * weights.
+     *
+     * @param nth  the desired moment, from 2 to 4
+     * @return     the moment, or zero if there are no points
+     */
+    public double getMoment(int nth)
+    {
+        if (sumWeights <= 0) return 0;
+
+        switch (nth) {
+            case 2:  return sum2 / sumWeights;
+            case 3:  return sum3 / sumWeights;
+            case 4:  return sum4 / sumWeights;
+            default: throw new IllegalArgumentException("Moment " + nth + " is not calculated");
+        }
+    }
+}
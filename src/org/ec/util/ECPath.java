@@ -1,6 +1,7 @@
 package org.ec.util;
 
 import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerGeometry;
 import org.ec.detector.ECViewLabel;
 
 /**
@@ -23,6 +24,15 @@ public class ECPath
     private double w;
 
 
+    /**
+     * Construct an object to store the path lengths.  Use {@link #calculate}
+     * to calculate them.
+     */
+    public ECPath()
+    {
+    }
+
+
     /**
      * Construc an object to calculate the path length for each axis.
      *
@@ -32,20 +42,34 @@ public class ECPath
      */
     public ECPath(ECLayer layer, double i, double j)
     {
-        double lu = layer.getEdgeL(ECViewLabel.U);
-        double lv = layer.getEdgeL(ECViewLabel.V);
-        double lw = layer.getEdgeL(ECViewLabel.W);
+        calculate(layer.getGeometry(), i, j);
+    }
+
+
+    /**
+     * Calculate the path length for each axis.  The object can be reused for
+     * many points.
+     *
+     * @param g  the geometry of the layer
+     * @param i  the <code>i</code> coordinate
+     * @param j  the <code>j</code> coordinate
+     */
+    public void calculate(ECLayerGeometry g, double i, double j)
+    {
+        double lu = g.getEdgeL(ECViewLabel.U);
+        double lv = g.getEdgeL(ECViewLabel.V);
+        double lw = g.getEdgeL(ECViewLabel.W);
 
-        double h  = Math.sqrt(lu * lu - lv * lv / 4);
-        double h1 = layer.getH1();
+        double ih  = i * g.getInvHeight();
+        double h1h = g.getH1OverHeight();
 
-        double du = (i / h + h1 / h) * lu;
-        double dv = lv - h1 / 2. / h * lv - j - lv / 2. / h * i;
-        double dw = lw / lv * j - lw / 2. / h * i - h1 / 2. / h * lw + lw;
+        double du = (ih + h1h) * lu;
+        double dv = lv * (1 - h1h / 2 - ih / 2) - j;
+        double dw = lw * (j * g.getInvEdgeL(ECViewLabel.V) - ih / 2 - h1h / 2 + 1);
 
-        u = du / lu * lv - (lv- dv);
-        v = dv / lv * lw - (lw - dw);
-        w = dw / lw * lu - (lu - du);
+        u = du * lv * g.getInvEdgeL(ECViewLabel.U) - (lv - dv);
+        v = dv * lw * g.getInvEdgeL(ECViewLabel.V) - (lw - dw);
+        w = dw * lu * g.getInvEdgeL(ECViewLabel.W) - (lu - du);
     }
 
 
@@ -1,9 +1,10 @@
 package org.ec.util;
 
-import java.util.Comparator;
-
+import org.ec.detector.ECConfig;
+import org.ec.detector.ECEventStore;
 import org.ec.detector.ECGeneral;
 import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerGeometry;
 import org.ec.detector.ECSector;
 import org.ec.detector.ECStrip;
 import org.ec.detector.ECView;
@@ -24,12 +25,16 @@ import org.ec.fit.ECPeakHit;
  * have the following characteristics:
  * <ol>
  *   <li>the energy deposit is above a threshold value given by the TCL
- *       variable {@link ECGeneral#STRIP_THRESHOLD STRIP_THRESHOLD}.
+ *       variable {@link ECConfig#getStripThreshold strip_threshold}.
  *   <li>the strips are immediately adjacent to each other, or they are not
  *       separated by any more strips than is specified by the TCL variable
  *       <code>touch_id</code>.  If <code>touch_id = 1</code>, no missing
  *       strips are allowed in the peak.  If <code>touch_id = 2</code>, one
  *       missing strip is allowed, if equals to 3, two are allowed, etc.
+ *   <li>if <code>touch_id = 0</code> (the default), no missing strips are
+ *       allowed, and a group of adjacent strips is also split at each local
+ *       minimum of the energy (a <em>valley</em>).  The strip in the valley
+ *       goes to the peak of its neighbour with the highest energy.
  * </ol>
  * There are other limits imposed as well: the maximum number of groups is
  * limited by the parameter {@link ECGeneral#MAX_PEAKS MAX_PEAKS}.  Note that
@@ -61,10 +66,15 @@ import org.ec.fit.ECPeakHit;
  * calculated; these are calculated using either of two weights: either
  * weighted by the energy in the strip, or by the logarithm of the energy in
  * the strip.  The two options are selected by the TCL variable
- * {@link ECGeneral#LN_WEIGHTS LN_WEIGHTS}.  The second moment, third moment,
+ * {@link ECConfig#isLnWeights ln_weights}.  The second moment, third moment,
  * and fourth moment of the distribution are calculated, and the method
  * returns.
  * <p>
+ * The logarithmic weights of both sections are calculated by
+ * {@link ECLogWeight}, with a table instead of <code>Math.log</code> if
+ * {@link ECConfig#isFastLnWeights fast_ln_weights} is set.  All the control
+ * variables are taken from the {@link ECConfig} given to the constructor.
+ * <p>
  * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
  * This software was developed under a United States Government license,<br>
  * described in the NOTICE file included as part of this distribution.<br>
@@ -78,10 +88,29 @@ public class ECPeaksFinder
     @SuppressWarnings("unused")
     private ECSector  sector;
     private ECHitMaps map;
+    private ECConfig  config;
 
     private int maxStrips;
     private double swId;
 
+    // Reused for the moments of all the peaks
+    private ECMoments moments;
+
+
+    /**
+     * Construct an object to find peaks from strips, with the default
+     * configuration.  See class documentation for the algorithm
+     * explanation.
+     *
+     * @param sector  the sector object with all the data
+     * @param map     the map object with all the extra maps
+     * @see           ECSector
+     */
+    public ECPeaksFinder(ECSector sector, ECHitMaps map)
+    {
+        this(sector, map, ECConfig.DEFAULT);
+    }
+
 
     /**
      * Construct an object to find peaks from strips.  See class documentation
@@ -89,15 +118,30 @@ public class ECPeaksFinder
      *
      * @param sector  the sector object with all the data
      * @param map     the map object with all the extra maps
+     * @param config  the control variables
      * @see           ECSector
      */
-    public ECPeaksFinder(ECSector sector, ECHitMaps map)
+    public ECPeaksFinder(ECSector sector, ECHitMaps map, ECConfig config)
     {
         this.sector = sector;
         this.map    = map;
+        this.config = config;
 
         this.maxStrips = 0;
         this.swId      = 0;
+        this.moments   = new ECMoments(config);
+    }
+
+
+    /**
+     * Use this object for the layers of other sector.  The object and its
+     * buffers can be reused for many sectors, one at a time.
+     *
+     * @param sector  the sector object with all the data
+     */
+    public void setSector(ECSector sector)
+    {
+        this.sector = sector;
     }
 
 
@@ -110,10 +154,11 @@ public class ECPeaksFinder
      */
     public void findPeaks(ECLayer layer)
     {
-        maxStrips = layer.getMaxStrips();
+        ECLayerGeometry g = layer.getGeometry();
+        maxStrips = g.getMaxStrips();
 
         for (ECView view : layer.getViewList()) {
-            swId = layer.getEdgeL(view.getLabel()) / this.maxStrips;
+            swId = g.getStripWidth(view.getLabel());
             getPeaksFromStrips(view);
             if (view.getNPeaks() > 0) {
                 sortPeaks(view);
@@ -128,36 +173,54 @@ public class ECPeaksFinder
      * the second section of the algorithm.  See the class documentation.  The
      * service needs to call first the {@link ECHitsFinder#findHits findHits}
      * method to get all the posible hits from the found peaks.
+     * <p>
+     * Only the peaks whose list of hits changed since the last call are
+     * corrected, the hits of the other peaks already have the results.
      *
      * @param layer  the layer object with the data
      * @see          ECLayer
      */
     public void correctPeaks(ECLayer layer)
     {
+        ECLayerGeometry g = layer.getGeometry();
+
         for (ECView view : layer.getViewList()) {
+            swId = g.getStripWidth(view.getLabel());
             attenuationLenght(view);
         }
+
+        map.clearChanges();
     }
 
 
     private void getPeaksFromStrips(ECView view)
     {
+        int    touchID   = config.getTouchID();
+        double threshold = config.getStripThreshold();
+
         // Artificial, so not touch with any strip
-        int id = -1 - ECGeneral.TOUCH_ID;
+        int id = -1 - touchID;
         ECFitPeak new_peak = null;
 
         if (view.getNStrips() <= 0 || view.getNStrips() > maxStrips) {
             // Skip event
             view.clearPeakList();
             return;
-        } else if (ECGeneral.TOUCH_ID > 0) {
-            for (ECStrip strip : view.getStripList()) {
-                if (strip.getID() <= 0 || strip.getID() >= maxStrips)
-                    // TODO Use recmes function to print error
-                    // Bad strip ID
+        } else if (touchID > 0) {
+            ECEventStore store = view.getStore();
+            int          index = view.getIndex();
+
+            // The strips are stored by ID, so they are visited in order
+            // without sorting.  Strips with bad IDs are never stored.
+            int first = store.getSlotByID(index, 1);
+            int last  = store.getSlotByID(index, Math.min(maxStrips, store.getCapacity()));
+            for (int slot = first; slot < last; slot++) {
+                if (!store.isFired(slot))
                     continue;
-                if (strip.getEnergy() > ECGeneral.STRIP_THRESHOLD) {
-                    if (strip.getID() - id > ECGeneral.TOUCH_ID) {
+                int    stripID = store.getStripID(slot);
+                double energy  = store.getEnergy(slot);
+                if (energy > threshold) {
+                    if (stripID - id > touchID) {
                         new_peak = view.newPeak();
                         if (view.getNPeaks() > ECGeneral.MAX_PEAKS) {
                             // Skip event
@@ -167,32 +230,83 @@ public class ECPeaksFinder
 
                         map.addPeak(new_peak);
                     }
-                    id = strip.getID();
-                    strip.setPeakEfr(1.0);
-                    double e = new_peak.getEnergy() + strip.getEnergy();
-                    new_peak.setEnergy(e);
-                    new_peak.addStrip(strip);
+                    id = stripID;
+                    store.setPeakEfr(slot, 1.0);
+                    new_peak.setEnergy(new_peak.getEnergy() + energy);
+                    new_peak.addStrip(view.getStripByID(stripID));
                 }
             }
-        } else if (ECGeneral.TOUCH_ID == 0) {
-            // TODO Call group0()
+        } else if (touchID == 0) {
+            getPeaksFromValleys(view);
         }
     }
 
 
-    private void sortPeaks(ECView view)
+    // Group the strips splitting at the local minima of the energy (group0
+    // in the original code).  One pass over the strips in ID order, looking
+    // ahead only to the next strip.
+    private void getPeaksFromValleys(ECView view)
     {
-        // Sort peaks by decreasing energy
-        view.sortPeaks(new OrderByDecreasingEnergy());
+        ECEventStore store = view.getStore();
+        int          index = view.getIndex();
+
+        int first = store.getSlotByID(index, 1);
+        int last  = store.getSlotByID(index, Math.min(maxStrips, store.getCapacity()));
+
+        double    threshold = config.getStripThreshold();
+        ECFitPeak new_peak  = null;
+        int       lastID    = -2;
+        double    lastE     = 0;
+        boolean   splitNext = false;
+
+        for (int slot = first; slot < last; slot++) {
+            if (!store.isFired(slot))
+                continue;
+            double energy = store.getEnergy(slot);
+            if (energy <= threshold)
+                continue;
+
+            int     stripID = store.getStripID(slot);
+            boolean start   = stripID != lastID + 1 || splitNext;
+            splitNext = false;
+
+            if (!start) {
+                int    next  = slot + 1;
+                double nextE = next < last && store.isFired(next) ? store.getEnergy(next) : 0;
+                if (nextE > threshold && energy < lastE && energy < nextE) {
+                    // Valley: the strip goes with the highest neighbour
+                    if (nextE > lastE)
+                        start = true;
+                    else
+                        splitNext = true;
+                }
+            }
 
-        // Delete peaks with energy below the threshold
-        int cont = 0;
-        for (ECFitPeak peak : view.getPeakList()) {
-            if (peak.getEnergy() < ECGeneral.PEAK_THRESHOLD) break;
-            cont++;
+            if (start) {
+                new_peak = view.newPeak();
+                if (view.getNPeaks() > ECGeneral.MAX_PEAKS) {
+                    // Skip event
+                    view.clearPeakList();
+                    return;
+                }
+
+                map.addPeak(new_peak);
+            }
+
+            lastID = stripID;
+            lastE  = energy;
+            store.setPeakEfr(slot, 1.0);
+            new_peak.setEnergy(new_peak.getEnergy() + energy);
+            new_peak.addStrip(view.getStripByID(stripID));
         }
+    }
+
 
-        view.resizePeakList(cont);
+    private void sortPeaks(ECView view)
+    {
+        // Delete peaks with energy below the threshold, and sort the rest by
+        // decreasing energy
+        view.selectPeaks(config.getPeakThreshold());
     }
 
 
@@ -200,40 +314,25 @@ public class ECPeaksFinder
     {
         // Calculate DIST and WIDTH for every peak
         for (ECFitPeak peak : view.getPeakList()) {
-            double sumEprj     = 0;
-            double sumEprj2    = 0;
-            double sum_weights = 0;
-
+            moments.clear();
             for (ECStrip strip : peak.getStripList()) {
-                double dprj = strip.getID() * swId - swId / 2; // Position of the strip
-                double dE   = strip.getEnergy();
-                if (ECGeneral.LN_WEIGHTS) {
-                    dE = Math.log(10000 * dE);
-                } else {
-                    dE = 0;
-                }
-
-                sumEprj     += dE * dprj;
-                sumEprj2    += dE * dprj * dprj;
-                sum_weights += dE;
+                double dprj = ECMoments.stripPosition(strip, swId);
+                moments.add(dprj, moments.stripWeight(strip.getEnergy()));
 
                 double energy = strip.getEnergy() * strip.getPeakEfr();
                 strip.setPeakEnergy(energy);
             }
 
-            // Centroid
-            double cntrd = sumEprj / sum_weights;   // Av. Position (first moment)
             // Set RMS width
             double width;
             if (peak.getNStrips() > 1) {
-                double width2 = sumEprj2 / sum_weights - cntrd * cntrd;
-                width  = Math.sqrt(Math.abs(width2));
+                width = Math.sqrt(moments.getMoment(2));
             } else {
                 width = swId / Math.sqrt(12.0);
             }
 
             peak.setWidth(width);
-            peak.setDist(cntrd);            // Position on axis
+            peak.setDist(moments.getCentroid());    // Position on axis
         }
     }
 
@@ -241,14 +340,18 @@ public class ECPeaksFinder
     private void attenuationLenght(ECView view)
     {
         for (ECFitPeak peak : view.getPeakList()) {
-            if (map.getNHits(peak) > 0) {
+            // The hits of the peak were already corrected
+            if (!map.isChanged(peak)) continue;
+
+            int nHits = map.getNHits(peak);
+            if (nHits > 0) {
                 double shortestPath = 1000;
                 double highestAdc   = 0;
                 @SuppressWarnings("unused")
                 int    highestAdcID = 0;
 
-                for (ECPeakHit hit : map.getHitList(peak)) {
-                    double path = hit.getPath();
+                for (int n = 0; n < nHits; n++) {
+                    double path = map.getHit(peak, n).getPath();
                     if (path < shortestPath)
                         shortestPath = path;
                 }
@@ -262,86 +365,40 @@ public class ECPeaksFinder
                     }
                 }
 
-                for (ECPeakHit hit : map.getHitList(peak)) {
-                    @SuppressWarnings("unused")
-                    double path       = hit.getPath();
-                    double sumEprj    = 0;
-                    double sumEprj2   = 0;
-                    double sumEprj3   = 0;
-                    double sumEprj4   = 0;
-                    double sumWeights = 0;
+                // Centroid and moments of the strips.  They are the same
+                // for all the hits of the peak until the energies are
+                // corrected along the path of each hit (TODO)
+                moments.clear();
+                moments.addStrips(peak, swId);
 
-                    // TODO iterate over strips
+                double cntrd = moments.getCentroid();
 
-                    if (sumWeights < 1E-6) sumWeights = 1E-6;
-                    if (sumWeights > 1E6)  sumWeights = 1E6;
+                double width;
+                if (peak.getNStrips() > 1) {
+                    width = Math.sqrt(moments.getMoment(2));
+                } else {
+                    width = Math.sqrt(12.0);
+                }
 
-                    double cntrd = sumEprj / sumWeights;
+                double myEprj2 = limitMoment(moments.getMoment(2));
+                double myEprj3 = limitMoment(moments.getMoment(3));
+                double myEprj4 = limitMoment(moments.getMoment(4));
 
-                    double width;
-                    if (peak.getNStrips() > 1) {
-                        double width2 = sumEprj2 / sumWeights - cntrd * cntrd;
-                        width = Math.sqrt(Math.abs(width2));
-                    } else {
-                        width = Math.sqrt(12.0);
-                    }
+                for (int n = 0; n < nHits; n++) {
+                    ECPeakHit hit = map.getHit(peak, n);
                     hit.setWidth(width);
-
-                    sumEprj2 = 0;
-                    sumEprj4 = 0;
-                    for (ECStrip strip : peak.getStripList()) {
-                        double dE = strip.getEnergy();
-                        if (ECGeneral.LN_WEIGHTS) {
-                            if (dE > 10000)
-                                dE = Math.log(10000 * dE);
-                            else
-                                dE = 0;
-                        }
-
-                        double dprj = strip.getID() * swId - swId / 2 - cntrd;
-
-                        sumEprj2   += dE * dprj * dprj;
-                        sumEprj3   += dE * dprj * dprj * dprj;
-                        sumEprj4   += dE * dprj * dprj * dprj * dprj;
-                        sumWeights += dE;
-                    }
-
-                    if (sumWeights < 1E-6) sumWeights = 1E-6;
-                    if (sumWeights > 1E6)  sumWeights = 1E6;
-
-                    double myEprj2 = sumEprj2 / sumWeights;
-                    if (Math.abs(myEprj2) < 1E-8) myEprj2 = 1E-8;
-                    if (Math.abs(myEprj2) > 1E8)  myEprj2 = 1E8 * Math.signum(myEprj2);
-
-                    double myEprj3 = sumEprj3 / sumWeights;
-                    if (Math.abs(myEprj3) < 1E-8) myEprj3 = 1E-8;
-                    if (Math.abs(myEprj3) > 1E8)  myEprj3 = 1E8 * Math.signum(myEprj3);
-
-                    double myEprj4 = sumEprj4 / sumWeights;
-                    if (Math.abs(myEprj4) < 1E-8) myEprj4 = 1E-8;
-                    if (Math.abs(myEprj4) > 1E8)  myEprj4 = 1E8 * Math.signum(myEprj4);
-
                     hit.setDist(cntrd);
-                    hit.setMoment(2, myEprj2);
-                    hit.setMoment(3, myEprj3);
-                    hit.setMoment(4, myEprj4);
+                    hit.setMoments(myEprj2, myEprj3, myEprj4);
                 }
             }
         }
     }
 
 
-    // TODO check if the order is OK
-    class OrderByDecreasingEnergy implements Comparator<ECFitPeak>
+    private static double limitMoment(double moment)
     {
-        public int compare(ECFitPeak p1, ECFitPeak p2)
-        {
-            if (p1.getEnergy() > p2.getEnergy())
-                return -1;
-            else if (p1.getEnergy() == p2.getEnergy())
-                return 0;
-            else
-                return 1;
-        }
+        if (Math.abs(moment) < 1E-8) moment = 1E-8;
+        if (Math.abs(moment) > 1E8)  moment = 1E8 * Math.signum(moment);
+        return moment;
     }
 }
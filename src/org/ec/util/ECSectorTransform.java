@@ -0,0 +1,159 @@
+package org.ec.util;
+
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECSector;
+import org.ec.fit.ECFitHit;
+
+/**
+ * Immutable transformation from the <code>IJK</code> local coordinate system
+ * of a sector to the <code>XYZ</code> CLAS coordinate system.
+ * <p>
+ * The rotation matrix and the origins of the sector are calculated once.
+ * Each {@link ECSector} keeps its own transformation, and builds a new one
+ * when its phi angle or its origins change.  All the transformation methods
+ * write in objects or arrays given by the caller.
+ * <p>
+ * <font size = 1>JSA: Thomas Jefferson National Accelerator Facility<br>
+ * This software was developed under a United States Government license,<br>
+ * described in the NOTICE file included as part of this distribution.<br>
+ * Copyright (c), Oct 16, 2026</font>
+ *
+ * @author      agent
+ * @version     0.1
+ * @see         ECSector#getTransform
+ * @see         ECCoordTransfer
+ */
+public final class ECSectorTransform
+{
+    // TODO Get this values from geometry
+    private static final double D2RAD = Math.PI / 180;
+    private static final double BSC_A = 25;
+
+    private final double phi;
+
+    private final double r00, r01, r02;
+    private final double r10, r11, r12;
+    private final double r20, r21, r22;
+
+    private final double x0, y0, z0;
+
+
+    /**
+     * Construct the transformation of a sector with the given phi angle and
+     * origins of the local coordinate system.
+     *
+     * @param phi  the phi angle of the sector
+     * @param x0   the origin of the <code>x</code> axis
+     * @param y0   the origin of the <code>y</code> axis
+     * @param z0   the origin of the <code>z</code> axis
+     */
+    public ECSectorTransform(double phi, double x0, double y0, double z0)
+    {
+        double cosA   = Math.cos(BSC_A * D2RAD);
+        double sinA   = Math.sin(BSC_A * D2RAD);
+        double cosPhi = Math.cos(phi * D2RAD);
+        double sinPhi = Math.sin(phi * D2RAD);
+
+        this.phi = phi;
+
+        r00 =  cosA * cosPhi;
+        r01 = -cosPhi;
+        r02 =  sinA * cosPhi;
+        r10 =  cosA * sinPhi;
+        r11 =  cosPhi;
+        r12 =  sinA * sinPhi;
+        r20 = -sinA;
+        r21 =  0;
+        r22 =  cosA;
+
+        this.x0 = x0;
+        this.y0 = y0;
+        this.z0 = z0;
+    }
+
+
+    /**
+     * Transform a point from the local to the CLAS coordinate system.
+     *
+     * @param i    the <code>i</code> coordinate
+     * @param j    the <code>j</code> coordinate
+     * @param k    the <code>k</code> coordinate
+     * @param xyz  the array where the <code>(x,y,z)</code> coordinates are
+     *             written, starting from position <code>off</code>
+     * @param off  the first position to write in the array
+     */
+    public void transformPoint(double i, double j, double k, double[] xyz, int off)
+    {
+        xyz[off]     = r00 * i + r01 * j + r02 * k + x0;
+        xyz[off + 1] = r10 * i + r11 * j + r12 * k + y0;
+        xyz[off + 2] = r20 * i + r21 * j + r22 * k + z0;
+    }
+
+
+    /**
+     * Transform the errors of a point from the local to the CLAS coordinate
+     * system.
+     *
+     * @param di   the error in the <code>i</code> coordinate
+     * @param dj   the error in the <code>j</code> coordinate
+     * @param dk   the error in the <code>k</code> coordinate
+     * @param xyz  the array where the <code>(dx,dy,dz)</code> errors are
+     *             written, starting from position <code>off</code>
+     * @param off  the first position to write in the array
+     */
+    public void transformErrors(double di, double dj, double dk, double[] xyz, int off)
+    {
+        xyz[off]     = Math.abs(r00 * di + r01 * dj + r02 * dk);
+        xyz[off + 1] = Math.abs(r10 * di + r11 * dj + r12 * dk);
+        xyz[off + 2] = Math.abs(r20 * di + r21 * dj + r22 * dk);
+    }
+
+
+    /**
+     * Set the CLAS coordinates and errors of the hit from its local
+     * coordinates and errors.
+     *
+     * @param hit  the hit to transform
+     */
+    public void transform(ECFitHit hit)
+    {
+        double i = hit.getLocalI();
+        double j = hit.getLocalJ();
+        double k = hit.getLocalK();
+
+        hit.setClasCoords(r00 * i + r01 * j + r02 * k + x0,
+                          r10 * i + r11 * j + r12 * k + y0,
+                          r20 * i + r21 * j + r22 * k + z0);
+
+        double di = hit.getLocalDI();
+        double dj = hit.getLocalDJ();
+        double dk = hit.getLocalDK();
+
+        hit.setClasErrors(Math.abs(r00 * di + r01 * dj + r02 * dk),
+                          Math.abs(r10 * di + r11 * dj + r12 * dk),
+                          Math.abs(r20 * di + r21 * dj + r22 * dk));
+    }
+
+
+    /**
+     * Set the CLAS coordinates and errors of all the hits of the layer.
+     *
+     * @param layer  the layer with the hits to transform
+     */
+    public void transformHits(ECLayer layer)
+    {
+        for (ECFitHit hit : layer.getHitList())
+            transform(hit);
+    }
+
+
+    /**
+     * Get the phi angle of the sector used for the transformation.
+     *
+     * @return  the phi angle
+     */
+    public double getPhi()
+    {
+        return phi;
+    }
+}
@@ -0,0 +1,129 @@
+package test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECViewLabel;
+import org.ec.fit.ECFitPeak;
+import org.ec.util.ECDalitz;
+import org.ec.util.ECDalitzKernel;
+
+/**
+ * Compare the evaluation of all the peak triples of a layer creating one
+ * Dalitz object per triple, as done by the previous implementation with a
+ * <code>HashMap</code> for the projections, against one
+ * {@link ECDalitzKernel} and a reused {@link ECDalitz} result.
+ */
+public class BenchmarkDalitz
+{
+    private static final int   ROUNDS = 5;
+    private static final int[] PEAKS  = { 2, 5, 10, 20, 30 };
+
+    public static void main(String[] args)
+    {
+        // The first pass only warms up the JIT
+        for (int pass = 0; pass < 2; pass++)
+            for (int nPeaks : PEAKS)
+                run(nPeaks, pass > 0);
+    }
+
+
+    private static void run(int nPeaks, boolean print)
+    {
+        ECSector sector = new ECSector(1);
+        SyntheticEvents.setGeometry(sector);
+        ECLayer layer = sector.getLayer(ECLayerName.INNER);
+        SyntheticEvents.fillPeaks(layer, new Random(nPeaks), nPeaks / 2, nPeaks - nPeaks / 2);
+
+        ECFitPeak[] u = layer.getView(ECViewLabel.U).getPeakList().toArray(new ECFitPeak[0]);
+        ECFitPeak[] v = layer.getView(ECViewLabel.V).getPeakList().toArray(new ECFitPeak[0]);
+        ECFitPeak[] w = layer.getView(ECViewLabel.W).getPeakList().toArray(new ECFitPeak[0]);
+
+        long triples = (long) u.length * v.length * w.length;
+        int  repeat  = (int) Math.max(1, 20000000 / triples);
+
+        for (int r = 0; r < ROUNDS; r++) {
+            double sum = 0;
+
+            long start = System.nanoTime();
+            for (int n = 0; n < repeat; n++)
+                for (ECFitPeak pu : u)
+                    for (ECFitPeak pv : v)
+                        for (ECFitPeak pw : w) {
+                            LegacyDalitz d = new LegacyDalitz(layer, pu, pv, pw, 1);
+                            if (d.isPoint) sum += d.projections.get("i");
+                        }
+            long objectTime = System.nanoTime() - start;
+
+            ECDalitzKernel kernel = new ECDalitzKernel(layer);
+            ECDalitz       result = new ECDalitz();
+
+            start = System.nanoTime();
+            for (int n = 0; n < repeat; n++)
+                for (ECFitPeak pu : u)
+                    for (ECFitPeak pv : v)
+                        for (ECFitPeak pw : w) {
+                            if (kernel.evaluate(pu, pv, pw, 1, result)) sum += result.getI();
+                        }
+            long kernelTime = System.nanoTime() - start;
+
+            if (print && r == ROUNDS - 1)
+                System.out.printf("%2d peaks/view: object %.2f ns/triple, kernel %.2f ns/triple (%.1f)%n",
+                                  nPeaks,
+                                  (double) objectTime / (triples * repeat),
+                                  (double) kernelTime / (triples * repeat),
+                                  sum);
+        }
+    }
+
+
+    /**
+     * The previous implementation of {@link ECDalitz}.
+     */
+    private static class LegacyDalitz
+    {
+        HashMap<String, Double> projections = new HashMap<String, Double>();
+        double  error;
+        double  rms;
+        boolean isPoint;
+
+        LegacyDalitz(ECLayer layer, ECFitPeak u, ECFitPeak v, ECFitPeak w, int iterr)
+        {
+            double du = u.getDist();
+            double dv = v.getDist();
+            double dw = w.getDist();
+
+            double wu = u.getWidth();
+            double wv = v.getWidth();
+            double ww = w.getWidth();
+
+            double lu = layer.getEdgeL(ECViewLabel.U);
+            double lv = layer.getEdgeL(ECViewLabel.V);
+            double lw = layer.getEdgeL(ECViewLabel.W);
+
+            double dalitz   = (du / lu) + (dv / lv) + (dw / lw);
+            double dDalitz  = Math.pow(wu / lu, 2) + Math.pow(wv / lv, 2) + Math.pow(ww / lw, 2);
+            double maxError = 2 * Math.sqrt(dDalitz);
+
+            error   = Math.abs(dalitz - 2) / maxError;
+            isPoint = Math.abs(dalitz - 2) < maxError;
+
+            if (isPoint) {
+                projections.put("i", layer.getH() * (du / lu - dv / lv - dw / lw) / 2 + layer.getH2());
+                projections.put("j", lv * (dw / lw - dv / lv) / 2);
+                projections.put("k", layer.getDepth());
+
+                if (iterr == 2) {
+                    double di = Math.sqrt(Math.pow(wu / lu, 2) + Math.pow(wv / lv, 2) + Math.pow(ww / lw, 2)) * layer.getH();
+                    double dj = Math.sqrt(Math.pow(wv / lv, 2) + Math.pow(ww / lw, 2)) * lv / 2;
+                    projections.put("di", di);
+                    projections.put("dj", dj);
+                    rms = Math.sqrt(Math.pow(di, 2) + Math.pow(dj, 2));
+                }
+            }
+        }
+    }
+}
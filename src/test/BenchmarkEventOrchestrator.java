@@ -0,0 +1,89 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECSector;
+import org.ec.detector.ECSectorPool;
+import org.ec.services.ECEventOrchestrator;
+
+/**
+ * Compare the latency of the events processing their six sectors one after
+ * the other against processing them in parallel with an
+ * {@link ECEventOrchestrator} of 2, 4 and 8 threads.  The results are
+ * checked to be the same.
+ */
+public class BenchmarkEventOrchestrator
+{
+    private static final int   EVENTS      = 200;
+    private static final int   POINTS      = 4;
+    private static final int   ROUNDS      = 5;
+    private static final int[] PARALLELISM = { 1, 2, 4, 8 };
+
+    public static void main(String[] args)
+    {
+        ECSectorPool pool   = new ECSectorPool(EVENTS);
+        final ECSector[][] events = new ECSector[EVENTS][];
+        for (int e = 0; e < EVENTS; e++) {
+            events[e] = pool.acquire();
+            for (ECSector sector : events[e])
+                SyntheticEvents.setGeometry(sector);
+        }
+
+        System.out.printf("%d available processors%n", Runtime.getRuntime().availableProcessors());
+
+        SyntheticEvents.warmUpAndRun(new SyntheticEvents.Pass() {
+            public void run(boolean print)
+            {
+                long reference = 0;
+                for (int parallelism : PARALLELISM) {
+                    ECEventOrchestrator orchestrator = new ECEventOrchestrator(parallelism);
+                    long time  = 0;
+                    long found = 0;
+                    for (int r = 0; r < ROUNDS; r++) {
+                        fill(events);
+                        orchestrator.resetLatency();
+                        long start = System.nanoTime();
+                        for (ECSector[] event : events)
+                            orchestrator.process(event);
+                        time  = System.nanoTime() - start;
+                        found = fingerprint(events);
+                    }
+                    orchestrator.shutdown();
+
+                    if (parallelism == 1)
+                        reference = found;
+                    else if (found != reference)
+                        throw new IllegalStateException("Different results with " + parallelism + " threads");
+
+                    if (print)
+                        System.out.printf("%d threads: latency mean %7.1f us, max %7.1f us, %7.1f events/s%n",
+                                          parallelism,
+                                          orchestrator.getMeanLatency() / 1000,
+                                          orchestrator.getMaxLatency() / 1000.0,
+                                          EVENTS * 1E9 / time);
+                }
+            }
+        });
+    }
+
+
+    private static void fill(ECSector[][] events)
+    {
+        Random random = new Random(42);
+        for (ECSector[] event : events) {
+            for (ECSector sector : event) {
+                sector.reset();
+                SyntheticEvents.fillPoints(sector, random, POINTS);
+            }
+        }
+    }
+
+
+    private static long fingerprint(ECSector[][] events)
+    {
+        long f = 0;
+        for (ECSector[] event : events)
+            f = 31 * f + SyntheticEvents.fingerprint(event);
+        return f;
+    }
+}
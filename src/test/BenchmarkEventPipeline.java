@@ -0,0 +1,144 @@
+package test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ec.detector.ECSector;
+import org.ec.detector.ECSectorPool;
+import org.ec.services.ECEventPipeline;
+import org.ec.services.HitsFinderService;
+import org.ec.services.MatchFinderService;
+
+/**
+ * Measure the throughput of an {@link ECEventPipeline} with synthetic events
+ * and different numbers of workers, against processing the events one after
+ * the other.  The writer checks that the events arrive in the order they
+ * were read and with the same results, and the number of events created by
+ * the pool shows that the memory stays bounded.
+ */
+public class BenchmarkEventPipeline
+{
+    private static final int   EVENTS    = 2000;
+    private static final int   POINTS    = 4;
+    private static final int   IN_FLIGHT = 16;
+
+    // Workers of the fill, hits and match stages
+    private static final int[][] WORKERS = { { 1, 1, 1 }, { 1, 2, 1 }, { 2, 4, 2 } };
+
+    private static final HitsFinderService  hits    = new HitsFinderService();
+    private static final MatchFinderService matches = new MatchFinderService();
+
+    public static void main(String[] args)
+    {
+        System.out.printf("%d available processors%n", Runtime.getRuntime().availableProcessors());
+
+        SyntheticEvents.warmUpAndRun(new SyntheticEvents.Pass() {
+            public void run(boolean print)
+            {
+                long[] reference = runSequential(print);
+                for (int[] workers : WORKERS)
+                    runPipeline(workers, reference, print);
+            }
+        });
+    }
+
+
+    private static long[] runSequential(boolean print)
+    {
+        ECSectorPool pool   = new ECSectorPool(1);
+        long[]       result = new long[EVENTS];
+
+        long start = System.nanoTime();
+        for (int e = 0; e < EVENTS; e++) {
+            ECSector[] event = pool.acquire();
+            fill(event, e);
+            for (ECSector sector : event) {
+                hits.executeService(0, sector);
+                matches.executeService(0, sector);
+            }
+            result[e] = SyntheticEvents.fingerprint(event);
+            pool.release(event);
+        }
+        long time = System.nanoTime() - start;
+
+        if (print)
+            System.out.printf("sequential: %7.1f events/s%n", EVENTS * 1E9 / time);
+        return result;
+    }
+
+
+    private static void runPipeline(int[] workers, final long[] reference, boolean print)
+    {
+        final ECSectorPool pool = new ECSectorPool(IN_FLIGHT);
+
+        // Number of each event, and all the events created by the pool
+        final Map<ECSector[], Integer> numbers = new ConcurrentHashMap<ECSector[], Integer>();
+        final Set<ECSector[]>          created =
+                Collections.newSetFromMap(new IdentityHashMap<ECSector[], Boolean>());
+
+        ECEventPipeline pipeline = new ECEventPipeline(IN_FLIGHT);
+
+        pipeline.addStage(new ECEventPipeline.Stage() {
+            public void process(ECSector[] sectors)
+            {
+                fill(sectors, numbers.get(sectors));
+            }
+        }, workers[0]);
+        pipeline.addStage(hits,    workers[1]);
+        pipeline.addStage(matches, workers[2]);
+
+        ECEventPipeline.Reader reader = new ECEventPipeline.Reader() {
+            private int next = 0;
+
+            public ECSector[] read()
+            {
+                if (next == EVENTS)
+                    return null;
+                ECSector[] event = pool.acquire();
+                created.add(event);
+                numbers.put(event, next++);
+                return event;
+            }
+        };
+
+        ECEventPipeline.Writer writer = new ECEventPipeline.Writer() {
+            private int next = 0;
+
+            public void write(ECSector[] sectors)
+            {
+                int n = numbers.remove(sectors);
+                if (n != next++)
+                    throw new IllegalStateException("Event " + n + " written out of order");
+                if (SyntheticEvents.fingerprint(sectors) != reference[n])
+                    throw new IllegalStateException("Different results for event " + n);
+                pool.release(sectors);
+            }
+        };
+
+        long start = System.nanoTime();
+        long nEvents = pipeline.run(reader, writer);
+        long time = System.nanoTime() - start;
+
+        if (nEvents != EVENTS)
+            throw new IllegalStateException("Only " + nEvents + " events written");
+
+        if (print)
+            System.out.printf("pipeline %d/%d/%d workers: %7.1f events/s, %d events created%n",
+                              workers[0], workers[1], workers[2],
+                              EVENTS * 1E9 / time, created.size());
+    }
+
+
+    private static void fill(ECSector[] event, int number)
+    {
+        Random random = new Random(number);
+        for (ECSector sector : event) {
+            SyntheticEvents.setGeometry(sector);
+            SyntheticEvents.fillPoints(sector, random, POINTS);
+        }
+    }
+}
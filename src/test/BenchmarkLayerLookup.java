@@ -0,0 +1,76 @@
+package test;
+
+import java.util.TreeMap;
+
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECView;
+import org.ec.detector.ECViewLabel;
+
+/**
+ * Compare the cost of the layer, view and match lookups through the
+ * ordinal-indexed arrays of {@link ECSector} and {@link ECLayer} against the
+ * <code>TreeMap</code> lookups used before.
+ */
+public class BenchmarkLayerLookup
+{
+    private static final int ROUNDS     = 5;
+    private static final int ITERATIONS = 2000000;
+
+    public static void main(String[] args)
+    {
+        ECSector sector = new ECSector(1);
+
+        // The old structures, filled with the same objects
+        TreeMap<ECLayerName, ECLayer> layerMap = new TreeMap<ECLayerName, ECLayer>();
+        TreeMap<ECLayerName, TreeMap<ECViewLabel, ECView>> viewMap =
+                new TreeMap<ECLayerName, TreeMap<ECViewLabel, ECView>>();
+        TreeMap<ECLayerName, TreeMap<ECLayerName, Integer>> nmatchMap =
+                new TreeMap<ECLayerName, TreeMap<ECLayerName, Integer>>();
+
+        for (ECLayerName name : ECLayerName.values()) {
+            ECLayer layer = sector.getLayer(name);
+            layerMap.put(name, layer);
+            viewMap.put(name, new TreeMap<ECViewLabel, ECView>());
+            nmatchMap.put(name, new TreeMap<ECLayerName, Integer>());
+            for (ECViewLabel label : ECViewLabel.values())
+                viewMap.get(name).put(label, layer.getView(label));
+            for (ECLayerName other : ECLayerName.values())
+                nmatchMap.get(name).put(other, 0);
+        }
+
+        ECLayerName[] names  = ECLayerName.values();
+        ECViewLabel[] labels = ECViewLabel.values();
+
+        for (int r = 0; r < ROUNDS; r++) {
+            long sum = 0;
+
+            long start = System.nanoTime();
+            for (int n = 0; n < ITERATIONS; n++) {
+                ECLayerName name  = names[n & 3];
+                ECViewLabel label = labels[n % 3];
+                ECView view = viewMap.get(layerMap.get(name).getName()).get(label);
+                sum += view.getNStrips();
+                sum += nmatchMap.get(name).get(names[(n + 1) & 3]);
+            }
+            long treeTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int n = 0; n < ITERATIONS; n++) {
+                ECLayerName name  = names[n & 3];
+                ECViewLabel label = labels[n % 3];
+                ECView view = sector.getLayer(name).getView(label);
+                sum += view.getNStrips();
+                sum += sector.getNmatch(name, names[(n + 1) & 3]);
+            }
+            long arrayTime = System.nanoTime() - start;
+
+            System.out.printf("round %d: TreeMap %.2f ns/lookup, array %.2f ns/lookup (%d)%n",
+                              r,
+                              (double) treeTime / ITERATIONS,
+                              (double) arrayTime / ITERATIONS,
+                              sum);
+        }
+    }
+}
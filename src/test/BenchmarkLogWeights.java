@@ -0,0 +1,109 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECConfig;
+import org.ec.detector.ECGeneral;
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECView;
+import org.ec.util.ECHitMaps;
+import org.ec.util.ECLogWeight;
+import org.ec.util.ECPeaksFinder;
+
+/**
+ * Check the accuracy of the table logarithm of {@link ECLogWeight}, and
+ * compare the time of {@link ECPeaksFinder#findPeaks} (peak positions with
+ * logarithmic weights) using the table against <code>Math.log</code>.
+ */
+public class BenchmarkLogWeights
+{
+    private static final int ROUNDS  = 5;
+    private static final int EVENTS  = 100;
+    private static final int REPEAT  = 200;
+    private static final int SAMPLES = 10000000;
+
+    public static void main(String[] args)
+    {
+        checkAccuracy();
+
+        ECSector[] sectors = new ECSector[EVENTS];
+        for (int e = 0; e < EVENTS; e++) {
+            sectors[e] = new ECSector(1);
+            SyntheticEvents.setGeometry(sectors[e]);
+            sectors[e].getLayer(ECLayerName.INNER).setMaxStrips(ECGeneral.MAX_PCAL_STRIPS);
+            SyntheticEvents.fillStrips(sectors[e], new Random(e), 8);
+        }
+        ECHitMaps map = new ECHitMaps();
+
+        for (int r = 0; r < ROUNDS; r++) {
+            long mathTime  = time(sectors, map, false);
+            long tableTime = time(sectors, map, true);
+
+            // The first rounds only warm up the JIT
+            if (r >= ROUNDS - 2)
+                System.out.printf("findPeaks: Math.log %.1f ns/layer, table %.1f ns/layer%n",
+                                  (double) mathTime / (EVENTS * REPEAT),
+                                  (double) tableTime / (EVENTS * REPEAT));
+        }
+    }
+
+
+    private static void checkAccuracy()
+    {
+        Random r        = new Random(1);
+        double maxError = 0;
+        double worst    = 0;
+        double sum      = 0;
+
+        // Strip energies from 1E-4 to 10
+        for (int n = 0; n < SAMPLES; n++) {
+            double e     = Math.pow(10, -4 + 5 * r.nextDouble());
+            double error = Math.abs(ECLogWeight.log(10000 * e) - Math.log(10000 * e));
+            if (error > maxError) {
+                maxError = error;
+                worst    = e;
+            }
+        }
+
+        double[] x = new double[4096];
+        for (int n = 0; n < x.length; n++)
+            x[n] = 1 + 100000 * r.nextDouble();
+
+        long start = System.nanoTime();
+        for (int k = 0; k < SAMPLES / x.length; k++)
+            for (double v : x) sum += Math.log(v);
+        long mathTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int k = 0; k < SAMPLES / x.length; k++)
+            for (double v : x) sum += ECLogWeight.log(v);
+        long tableTime = System.nanoTime() - start;
+
+        System.out.printf("max error %.3g at E = %.4g (bound %.3g)%n", maxError, worst, ECLogWeight.MAX_ERROR);
+        System.out.printf("log: Math.log %.2f ns, table %.2f ns (%.1f)%n",
+                          (double) mathTime / SAMPLES, (double) tableTime / SAMPLES, sum);
+    }
+
+
+    private static long time(ECSector[] sectors, ECHitMaps map, boolean fast)
+    {
+        ECConfig config = new ECConfig.Builder().setFastLnWeights(fast).build();
+
+        ECPeaksFinder[] finders = new ECPeaksFinder[sectors.length];
+        for (int e = 0; e < sectors.length; e++)
+            finders[e] = new ECPeaksFinder(sectors[e], map, config);
+
+        long start = System.nanoTime();
+        for (int n = 0; n < REPEAT; n++) {
+            for (int e = 0; e < sectors.length; e++) {
+                ECLayer layer = sectors[e].getLayer(ECLayerName.INNER);
+                for (ECView view : layer.getViewList())
+                    view.clearPeakList();
+                finders[e].findPeaks(layer);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
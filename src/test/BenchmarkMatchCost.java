@@ -0,0 +1,128 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.util.ECMatchCost;
+
+/**
+ * Compare the calculation of the <em>chi<sup>2</sup></em> matrix of all the
+ * pairs of hits of two layers with {@link ECMatchCost} against a loop that
+ * calculates each pair alone, for several numbers of hits per layer.  The
+ * matrix is calculated by the scalar kernel, and by the kernel of the
+ * Vector API when it runs with <code>--add-modules jdk.incubator.vector</code>.
+ * All the matrices are checked to be the same.
+ * <p>
+ * Run it with <code>-XX:-UseSuperWord</code> to see the time of the scalar
+ * matrix without the SIMD instructions.
+ */
+public class BenchmarkMatchCost
+{
+    private static final int   ROUNDS = 5;
+    private static final int[] HITS   = { 4, 8, 16, 32, 64, 128, 256 };
+
+    private static double sink;
+
+
+    public static void main(String[] args)
+    {
+        // The first pass only warms up the JIT
+        for (int pass = 0; pass < 2; pass++)
+            for (int nHits : HITS)
+                run(nHits, pass > 0);
+    }
+
+
+    private static void run(int n, boolean print)
+    {
+        Random r = new Random(n);
+        double[][] s = createHits(r, n);
+        double[][] t = createHits(r, n);
+
+        ECMatchCost.Kernel vector = ECMatchCost.getVectorKernel();
+        ECMatchCost costs  = new ECMatchCost(ECMatchCost.SCALAR);
+        ECMatchCost vcosts = vector != null ? new ECMatchCost(vector) : null;
+        double[]    single = new double[n * n];
+
+        computeSingle(s, t, n, single);
+        check(costs, s, t, n, single);
+        if (vcosts != null)
+            check(vcosts, s, t, n, single);
+
+        int repeat = Math.max(1, 20000000 / (n * n));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int k = 0; k < repeat; k++) {
+                computeSingle(s, t, n, single);
+                sink += single[k % (n * n)];
+            }
+            long singleTime = System.nanoTime() - start;
+
+            long matrixTime = time(costs, s, t, n, repeat);
+            long vectorTime = vcosts != null ? time(vcosts, s, t, n, repeat) : 0;
+
+            if (print && round == ROUNDS - 1) {
+                double pairs = (double) repeat * n * n;
+                System.out.printf("%3d hits/layer: single %6.2f ns/pair, matrix %6.2f ns/pair",
+                                  n, singleTime / pairs, matrixTime / pairs);
+                if (vcosts != null)
+                    System.out.printf(", vector %6.2f ns/pair", vectorTime / pairs);
+                System.out.println();
+            }
+        }
+    }
+
+
+    // Apart from run, so that the kernel is compiled with the loop that
+    // calls it, and the vectors of the Vector API are not allocated
+    private static long time(ECMatchCost costs, double[][] s, double[][] t, int n, int repeat)
+    {
+        long start = System.nanoTime();
+        for (int k = 0; k < repeat; k++) {
+            costs.compute(s[0], s[1], s[2], s[3], n, t[0], t[1], t[2], t[3], n);
+            sink += costs.get(k % n, 0);
+        }
+        return System.nanoTime() - start;
+    }
+
+
+    private static void check(ECMatchCost costs, double[][] s, double[][] t, int n, double[] single)
+    {
+        costs.compute(s[0], s[1], s[2], s[3], n, t[0], t[1], t[2], t[3], n);
+        for (int a = 0; a < n; a++)
+            for (int b = 0; b < n; b++)
+                if (Double.doubleToLongBits(costs.get(a, b)) != Double.doubleToLongBits(single[a * n + b]))
+                    throw new IllegalStateException("Different cost for pair " + a + ", " + b);
+    }
+
+
+    // Coordinates and variances on the face
+    private static double[][] createHits(Random r, int n)
+    {
+        double[][] hits = new double[4][n];
+        for (int k = 0; k < n; k++) {
+            hits[0][k] = 400 * r.nextDouble();
+            hits[1][k] = 400 * r.nextDouble() - 200;
+            hits[2][k] = Math.pow(1 + 3 * r.nextDouble(), 2);
+            hits[3][k] = Math.pow(1 + 3 * r.nextDouble(), 2);
+        }
+        return hits;
+    }
+
+
+    // One pair at a time, with the hits given as rows
+    private static void computeSingle(double[][] s, double[][] t, int n, double[] out)
+    {
+        for (int a = 0; a < n; a++)
+            for (int b = 0; b < n; b++)
+                out[a * n + b] = cost(s, a, t, b);
+    }
+
+
+    private static double cost(double[][] s, int a, double[][] t, int b)
+    {
+        double di = s[0][a] - t[0][b];
+        double dj = s[1][a] - t[1][b];
+        return di * di / (s[2][a] + t[2][b]) + dj * dj / (s[3][a] + t[3][b]);
+    }
+}
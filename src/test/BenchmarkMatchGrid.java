@@ -0,0 +1,173 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECViewLabel;
+import org.ec.fit.ECFitHit;
+import org.ec.fit.ECFitPeak;
+import org.ec.util.ECMatchFinder;
+
+/**
+ * Compare the matching of hits between layers of {@link ECMatchFinder}
+ * checking all the pairs of hits against the search with the grid index,
+ * for 10 to 256 points per layer.  Each layer misses about 10% of the
+ * points, so 56 points give about 50 hits per layer.  The matches found by
+ * both searches are checked to be the same.
+ * <p>
+ * Run it with <code>--add-modules jdk.incubator.vector</code> to check all
+ * the pairs with the cost matrix of the Vector API, instead of one pair at
+ * a time.
+ */
+public class BenchmarkMatchGrid
+{
+    private static final int   ROUNDS = 5;
+    private static final int[] HITS   = { 10, 24, 48, 56, 64, 128, 200, 256 };
+    private static final int   EVENTS = 20;
+
+    public static void main(String[] args)
+    {
+        // The first pass only warms up the JIT
+        for (int pass = 0; pass < 2; pass++)
+            for (int nHits : HITS)
+                run(nHits, pass > 0);
+    }
+
+
+    private static void run(int nHits, boolean print)
+    {
+        ECSector[] sectors = new ECSector[EVENTS];
+        for (int e = 0; e < EVENTS; e++)
+            sectors[e] = createEvent(new Random(1000 * nHits + e), nHits);
+
+        int nMatches = 0;
+        for (ECSector sector : sectors)
+            nMatches += compare(sector);
+
+        int repeat = Math.max(1, 20000 / (nHits * EVENTS));
+
+        for (int r = 0; r < ROUNDS; r++) {
+            long allTime  = time(sectors, Integer.MAX_VALUE, repeat);
+            long gridTime = time(sectors, 0, repeat);
+
+            if (print && r == ROUNDS - 1)
+                System.out.printf("%3d points/layer: all %9.1f ns/event, grid %9.1f ns/event (%d matches)%n",
+                                  nHits,
+                                  (double) allTime / (EVENTS * repeat),
+                                  (double) gridTime / (EVENTS * repeat),
+                                  nMatches);
+        }
+    }
+
+
+    // Hits in all the layers close to the same random points of the face
+    private static ECSector createEvent(Random r, int nHits)
+    {
+        ECSector sector = new ECSector(1);
+        double[] pi = new double[nHits];
+        double[] pj = new double[nHits];
+        for (int n = 0; n < nHits; n++) {
+            pi[n] = 400 * r.nextDouble();
+            pj[n] = 400 * r.nextDouble() - 200;
+        }
+
+        for (ECLayer layer : sector.getLayerList()) {
+            ECFitPeak u = layer.getView(ECViewLabel.U).newPeak();
+            ECFitPeak v = layer.getView(ECViewLabel.V).newPeak();
+            ECFitPeak w = layer.getView(ECViewLabel.W).newPeak();
+            for (int n = 0; n < nHits; n++) {
+                // Shuffled order, and some points missing in each layer
+                int k = r.nextInt(nHits);
+                if (r.nextDouble() < 0.1) continue;
+
+                double di = 1 + 3 * r.nextDouble();
+                double dj = 1 + 3 * r.nextDouble();
+                ECFitHit hit = layer.newHit(u, v, w);
+                hit.setFaceCoords(pi[k] + di * r.nextGaussian(), pj[k] + dj * r.nextGaussian());
+                hit.setFaceErrors(di, dj);
+                hit.setEnergy(0.1 + r.nextDouble());
+                hit.setTime(10 * r.nextDouble());
+                hit.setThick(10);
+            }
+        }
+        return sector;
+    }
+
+
+    private static long time(ECSector[] sectors, int gridMinHits, int repeat)
+    {
+        long total = 0;
+        for (int n = 0; n < repeat; n++) {
+            for (ECSector sector : sectors) {
+                clearMatches(sector);
+                long start = System.nanoTime();
+                match(sector, gridMinHits);
+                total += System.nanoTime() - start;
+            }
+        }
+        return total;
+    }
+
+
+    private static void match(ECSector sector, int gridMinHits)
+    {
+        ECMatchFinder finder = new ECMatchFinder(sector);
+        finder.setGridMinHits(gridMinHits);
+        finder.matchInnerLayer();
+        finder.matchOuterLayer();
+    }
+
+
+    private static int compare(ECSector sector)
+    {
+        ECLayerName[] names  = ECLayerName.values();
+        int           nPairs = 0;
+
+        clearMatches(sector);
+        match(sector, Integer.MAX_VALUE);
+        int total = 0;
+        for (ECLayer layer : sector.getLayerList())
+            total += layer.getNHits();
+
+        ECFitHit[] matches = new ECFitHit[total * names.length];
+        double[]   chi2    = new double[total * names.length];
+        int k = 0;
+        for (ECLayer layer : sector.getLayerList())
+            for (ECFitHit hit : layer.getHitList())
+                for (ECLayerName name : names) {
+                    matches[k] = hit.getMatch(sector.getLayer(name));
+                    chi2[k]    = hit.getC2Match(sector.getLayer(name));
+                    if (matches[k] != null) nPairs++;
+                    k++;
+                }
+
+        clearMatches(sector);
+        match(sector, 0);
+        k = 0;
+        for (ECLayer layer : sector.getLayerList())
+            for (ECFitHit hit : layer.getHitList())
+                for (ECLayerName name : names) {
+                    if (hit.getMatch(sector.getLayer(name)) != matches[k]
+                            || Double.doubleToLongBits(hit.getC2Match(sector.getLayer(name)))
+                               != Double.doubleToLongBits(chi2[k]))
+                        throw new IllegalStateException("Different match for hit " + hit.getID()
+                                                        + " of " + layer.getName() + " with " + name);
+                    k++;
+                }
+
+        return nPairs / 2;
+    }
+
+
+    private static void clearMatches(ECSector sector)
+    {
+        for (ECLayer layer : sector.getLayerList())
+            for (ECFitHit hit : layer.getHitList())
+                for (ECLayer other : sector.getLayerList()) {
+                    hit.setMatch(other, null);
+                    hit.setC2Match(other, 0);
+                }
+    }
+}
@@ -0,0 +1,116 @@
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.ec.detector.ECConfig;
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECView;
+import org.ec.services.HitsFinderService;
+
+/**
+ * Compare the latency of {@link HitsFinderService} finding the hits of the
+ * four layers of a sector one after the other against finding them in
+ * parallel, for sectors with 2 to 30 showers.  The results are checked to
+ * be the same.  The mean number of fired strips of the sectors is printed
+ * with the times, to choose the variable <code>parallel_strips</code> from
+ * where the parallel layers are faster.  With only one processor the
+ * service never processes the layers in parallel, so run it with
+ * <code>-XX:ActiveProcessorCount</code> to force them on such a machine.
+ */
+public class BenchmarkParallelLayers
+{
+    private static final int   SECTORS = 200;
+    private static final int   ROUNDS  = 5;
+    private static final int[] POINTS  = { 2, 4, 6, 8, 16, 30 };
+
+    public static void main(String[] args)
+    {
+        final ECSector[] sectors = new ECSector[SECTORS];
+        for (int s = 0; s < SECTORS; s++) {
+            sectors[s] = new ECSector(s % 6 + 1);
+            SyntheticEvents.setGeometry(sectors[s]);
+        }
+
+        final ECConfig sequential = new ECConfig.Builder().setParallelStrips(Integer.MAX_VALUE).build();
+        final ECConfig parallel   = new ECConfig.Builder().setParallelStrips(0).build();
+
+        final HitsFinderService service = new HitsFinderService();
+
+        System.out.printf("%d available processors%n", Runtime.getRuntime().availableProcessors());
+
+        SyntheticEvents.warmUpAndRun(new SyntheticEvents.Pass() {
+            public void run(boolean print)
+            {
+                for (int points : POINTS) {
+                    service.configure(sequential);
+                    long[] seqTimes  = time(service, sectors, points);
+                    long   reference = SyntheticEvents.fingerprint(sectors);
+
+                    service.configure(parallel);
+                    long[] parTimes = time(service, sectors, points);
+                    if (SyntheticEvents.fingerprint(sectors) != reference)
+                        throw new IllegalStateException("Different results with " + points + " points");
+
+                    if (print)
+                        System.out.printf("%2d points (%4.0f strips): sequential mean %7.1f us, p99 %7.1f us;"
+                                          + " parallel mean %7.1f us, p99 %7.1f us%n",
+                                          points, meanStrips(sectors),
+                                          mean(seqTimes) / 1000, percentile(seqTimes, 0.99) / 1000.0,
+                                          mean(parTimes) / 1000, percentile(parTimes, 0.99) / 1000.0);
+                }
+            }
+        });
+    }
+
+
+    // Best time of each sector over all the rounds
+    private static long[] time(HitsFinderService service, ECSector[] sectors, int points)
+    {
+        long[] times = new long[sectors.length];
+        Arrays.fill(times, Long.MAX_VALUE);
+        for (int r = 0; r < ROUNDS; r++) {
+            Random random = new Random(42);
+            for (ECSector sector : sectors) {
+                sector.reset();
+                SyntheticEvents.fillPoints(sector, random, points);
+            }
+            for (int s = 0; s < sectors.length; s++) {
+                long start = System.nanoTime();
+                service.executeService(0, sectors[s]);
+                times[s] = Math.min(times[s], System.nanoTime() - start);
+            }
+        }
+        return times;
+    }
+
+
+    private static double meanStrips(ECSector[] sectors)
+    {
+        double sum = 0;
+        for (ECSector sector : sectors)
+            for (ECLayer layer : sector.getLayerList())
+                for (ECView view : layer.getViewList())
+                    sum += view.getNStrips();
+        return sum / sectors.length;
+    }
+
+
+    private static double mean(long[] times)
+    {
+        double sum = 0;
+        for (long t : times)
+            sum += t;
+        return sum / times.length;
+    }
+
+
+    private static long percentile(long[] times, double p)
+    {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, p * sorted.length)];
+    }
+
+}
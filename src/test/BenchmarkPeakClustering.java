@@ -0,0 +1,129 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECConfig;
+import org.ec.detector.ECGeneral;
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECStrip;
+import org.ec.detector.ECView;
+import org.ec.util.ECHitMaps;
+import org.ec.util.ECPeaksFinder;
+
+/**
+ * Compare {@link ECPeaksFinder#findPeaks} splitting the groups of strips at
+ * the energy valleys (<code>TOUCH_ID = 0</code>) against grouping only by
+ * contiguity (<code>TOUCH_ID = 1</code>), on layers with overlapping
+ * showers.
+ */
+public class BenchmarkPeakClustering
+{
+    private static final int   ROUNDS  = 5;
+    private static final int[] SHOWERS = { 1, 3, 6, 12 };
+    private static final int   EVENTS  = 100;
+
+    public static void main(String[] args)
+    {
+        // The first pass only warms up the JIT
+        for (int pass = 0; pass < 3; pass++)
+            for (int nShowers : SHOWERS)
+                run(nShowers, pass > 1);
+    }
+
+
+    private static void run(int nShowers, boolean print)
+    {
+        ECSector[] sectors = new ECSector[EVENTS];
+        for (int e = 0; e < EVENTS; e++) {
+            sectors[e] = new ECSector(1);
+            SyntheticEvents.setGeometry(sectors[e]);
+            ECLayer layer = sectors[e].getLayer(ECLayerName.INNER);
+            layer.setMaxStrips(ECGeneral.MAX_PCAL_STRIPS);
+            fillShowers(layer, new Random(100 * nShowers + e), nShowers);
+        }
+
+        ECHitMaps map = new ECHitMaps();
+
+        for (int r = 0; r < ROUNDS; r++) {
+            ECConfig valleys = new ECConfig.Builder().setTouchID(0).build();
+            int  valleyPeaks = count(sectors, map, valleys);
+            long valleyTime  = time(sectors, map, valleys);
+
+            ECConfig touch = new ECConfig.Builder().setTouchID(1).build();
+            int  touchPeaks = count(sectors, map, touch);
+            long touchTime  = time(sectors, map, touch);
+
+            if (print && r == ROUNDS - 1)
+                System.out.printf("%2d showers/view: valleys %7.1f ns/layer (%.1f peaks/view), "
+                                  + "contiguity %7.1f ns/layer (%.1f peaks/view)%n",
+                                  nShowers,
+                                  (double) valleyTime / (EVENTS * REPEAT),
+                                  valleyPeaks / (3.0 * EVENTS),
+                                  (double) touchTime / (EVENTS * REPEAT),
+                                  touchPeaks / (3.0 * EVENTS));
+        }
+    }
+
+
+    private static final int REPEAT = 200;
+
+    private static long time(ECSector[] sectors, ECHitMaps map, ECConfig config)
+    {
+        ECPeaksFinder[] finders = new ECPeaksFinder[sectors.length];
+        for (int e = 0; e < sectors.length; e++)
+            finders[e] = new ECPeaksFinder(sectors[e], map, config);
+
+        long start = System.nanoTime();
+        for (int n = 0; n < REPEAT; n++) {
+            for (int e = 0; e < sectors.length; e++) {
+                ECLayer layer = sectors[e].getLayer(ECLayerName.INNER);
+                for (ECView view : layer.getViewList())
+                    view.clearPeakList();
+                finders[e].findPeaks(layer);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+
+    private static int count(ECSector[] sectors, ECHitMaps map, ECConfig config)
+    {
+        int nPeaks = 0;
+        for (ECSector sector : sectors) {
+            ECLayer layer = sector.getLayer(ECLayerName.INNER);
+            for (ECView view : layer.getViewList())
+                view.clearPeakList();
+            new ECPeaksFinder(sector, map, config).findPeaks(layer);
+            for (ECView view : layer.getViewList())
+                nPeaks += view.getNPeaks();
+        }
+        return nPeaks;
+    }
+
+
+    // Gaussian energy profiles, with centers close enough to overlap
+    private static void fillShowers(ECLayer layer, Random r, int nShowers)
+    {
+        int maxStrips = layer.getMaxStrips();
+        for (ECView view : layer.getViewList()) {
+            double[] energy = new double[maxStrips];
+            for (int n = 0; n < nShowers; n++) {
+                double center = 2 + r.nextDouble() * (maxStrips - 4);
+                double sigma  = 0.7 + r.nextDouble();
+                double total  = 0.02 + 0.2 * r.nextDouble();
+                for (int id = 1; id < maxStrips; id++) {
+                    double x = (id - center) / sigma;
+                    energy[id] += total * Math.exp(-0.5 * x * x) / (sigma * Math.sqrt(2 * Math.PI));
+                }
+            }
+            for (int id = 1; id < maxStrips; id++) {
+                if (energy[id] > 1e-4) {
+                    ECStrip strip = view.newStrip(id);
+                    strip.setEnergy(energy[id]);
+                }
+            }
+        }
+    }
+}
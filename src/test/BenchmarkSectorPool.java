@@ -0,0 +1,97 @@
+package test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.ec.detector.ECGeneral;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECSectorPool;
+
+/**
+ * Compare the memory allocated per event creating new sectors for each event
+ * against reusing them through an {@link ECSectorPool}.
+ * <p>
+ * The allocated bytes are measured with the HotSpot extension of the thread
+ * MX bean, so this benchmark needs a HotSpot based JVM.
+ */
+public class BenchmarkSectorPool
+{
+    private static final int EVENTS   = 200000;
+    private static final int CLUSTERS = 3;
+
+    public static void main(String[] args)
+    {
+        // The first pass only warms up the JIT
+        for (int pass = 0; pass < 2; pass++) {
+            run("new sectors ", false, pass > 0);
+            run("pooled      ", true,  pass > 0);
+        }
+    }
+
+
+    private static void run(String name, boolean pooled, boolean print)
+    {
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadID = Thread.currentThread().getId();
+
+        ECSectorPool pool   = new ECSectorPool(1);
+        Random       random = new Random(42);
+        long         strips = 0;
+
+        long gcCount = gcCount();
+        long gcTime  = gcTime();
+        long bytes   = mx.getThreadAllocatedBytes(threadID);
+        long start   = System.nanoTime();
+
+        for (int n = 0; n < EVENTS; n++) {
+            ECSector[] sectors;
+            if (pooled) {
+                sectors = pool.acquire();
+            } else {
+                sectors = new ECSector[ECGeneral.MAX_SECTORS];
+                for (int id = 1; id <= ECGeneral.MAX_SECTORS; id++)
+                    sectors[id - 1] = new ECSector(id);
+            }
+
+            for (ECSector sector : sectors) {
+                SyntheticEvents.fillStrips(sector, random, CLUSTERS);
+                strips += sector.getLayerList().iterator().next().getViewList().iterator().next().getNStrips();
+            }
+
+            if (pooled)
+                pool.release(sectors);
+        }
+
+        long time = System.nanoTime() - start;
+        bytes     = mx.getThreadAllocatedBytes(threadID) - bytes;
+
+        if (print)
+            System.out.printf("%s %8.0f bytes/event, %6.2f us/event, %4d GCs, %5d ms in GC (%d)%n",
+                              name,
+                              (double) bytes / EVENTS,
+                              time / 1000.0 / EVENTS,
+                              gcCount() - gcCount,
+                              gcTime() - gcTime,
+                              strips);
+    }
+
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += gc.getCollectionCount();
+        return count;
+    }
+
+
+    private static long gcTime()
+    {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time += gc.getCollectionTime();
+        return time;
+    }
+}
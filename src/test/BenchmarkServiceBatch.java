@@ -0,0 +1,112 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECSector;
+import org.ec.services.HitsFinderService;
+import org.ec.services.MatchFinderService;
+
+/**
+ * Compare the cost per sector of the services called once for each sector
+ * against the batch variant of <code>executeService</code> with batches of
+ * 6, 60 and 600 sectors, with one and two workers.  The hits service runs
+ * on sectors with strips, and the match service on other sectors with
+ * hits.  The peaks, hits, matches, <em>chi<sup>2</sup></em> and times found
+ * are checked to be the same.
+ */
+public class BenchmarkServiceBatch
+{
+    private static final int   SECTORS = 600;
+    private static final int   POINTS  = 4;
+    private static final int   HITS    = 30;
+    private static final int   ROUNDS  = 5;
+    private static final int[] BATCHES = { 1, 6, 60, 600 };
+    private static final int[] WORKERS = { 1, 2 };
+
+    public static void main(String[] args)
+    {
+        final ECSector[] strips = new ECSector[SECTORS];
+        final ECSector[] hits   = new ECSector[SECTORS];
+        for (int s = 0; s < SECTORS; s++) {
+            strips[s] = new ECSector(s % 6 + 1);
+            hits[s]   = new ECSector(s % 6 + 1);
+            SyntheticEvents.setGeometry(strips[s]);
+        }
+
+        final HitsFinderService  hitsService  = new HitsFinderService();
+        final MatchFinderService matchService = new MatchFinderService();
+
+        SyntheticEvents.warmUpAndRun(new SyntheticEvents.Pass() {
+            public void run(boolean print)
+            {
+                long reference = 0;
+                for (int workers : WORKERS) {
+                    hitsService.setBatchWorkers(workers);
+                    matchService.setBatchWorkers(workers);
+                    for (int batch : BATCHES) {
+                        if (batch == 1 && workers > 1)
+                            continue;
+                        long time  = Long.MAX_VALUE;
+                        long found = 0;
+                        for (int r = 0; r < ROUNDS; r++) {
+                            fill(strips, hits);
+                            long start = System.nanoTime();
+                            execute(hitsService, strips, matchService, hits, batch);
+                            time  = Math.min(time, System.nanoTime() - start);
+                            found = 31 * SyntheticEvents.fingerprint(strips)
+                                  + SyntheticEvents.fingerprint(hits);
+                        }
+
+                        if (batch == 1)
+                            reference = found;
+                        else if (found != reference)
+                            throw new IllegalStateException("Different results with batches of " + batch);
+
+                        if (print)
+                            System.out.printf("%s %3d sectors, %d workers: %7.2f us/sector%n",
+                                              batch == 1 ? "single" : "batch ", batch, workers,
+                                              time / 1000.0 / SECTORS);
+                    }
+                }
+            }
+        });
+
+        hitsService.setBatchWorkers(1);
+        matchService.setBatchWorkers(1);
+    }
+
+
+    private static void execute(HitsFinderService hitsService, ECSector[] strips,
+                                MatchFinderService matchService, ECSector[] hits,
+                                int batch)
+    {
+        if (batch == 1) {
+            for (int s = 0; s < strips.length; s++) {
+                hitsService.executeService(0, strips[s]);
+                matchService.executeService(0, hits[s]);
+            }
+            return;
+        }
+
+        int[]    types = new int[batch];
+        Object[] data  = new Object[batch];
+        for (int first = 0; first < strips.length; first += batch) {
+            System.arraycopy(strips, first, data, 0, batch);
+            hitsService.executeService(types, data);
+            System.arraycopy(hits, first, data, 0, batch);
+            matchService.executeService(types, data);
+        }
+    }
+
+
+    private static void fill(ECSector[] strips, ECSector[] hits)
+    {
+        Random random = new Random(42);
+        for (int s = 0; s < strips.length; s++) {
+            strips[s].reset();
+            SyntheticEvents.fillPoints(strips[s], random, POINTS);
+            hits[s].reset();
+            SyntheticEvents.fillHits(hits[s], random, 1 + random.nextInt(HITS));
+        }
+    }
+}
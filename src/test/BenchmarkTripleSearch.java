@@ -0,0 +1,129 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECView;
+import org.ec.detector.ECViewLabel;
+import org.ec.fit.ECFitHit;
+import org.ec.fit.ECFitPeak;
+import org.ec.util.ECHitMaps;
+import org.ec.util.ECHitsFinder;
+
+/**
+ * Compare the search of hits in {@link ECHitsFinder#findHits} checking all
+ * the combinations of peaks against the pruned search with the sorted
+ * <em>W</em> peaks, for several occupancies.  The hits found by both
+ * searches are checked to be the same.
+ */
+public class BenchmarkTripleSearch
+{
+    private static final int   ROUNDS = 5;
+    private static final int[] PEAKS  = { 2, 5, 10, 20, 30 };
+    private static final int   EVENTS = 50;
+
+    public static void main(String[] args)
+    {
+        // The first pass only warms up the JIT
+        for (int pass = 0; pass < 2; pass++)
+            for (int nPeaks : PEAKS)
+                run(nPeaks, pass > 0);
+    }
+
+
+    private static void run(int nPeaks, boolean print)
+    {
+        ECSector[] sectors = new ECSector[EVENTS];
+        for (int e = 0; e < EVENTS; e++) {
+            sectors[e] = new ECSector(1);
+            SyntheticEvents.setGeometry(sectors[e]);
+            ECLayer layer = sectors[e].getLayer(ECLayerName.INNER);
+            int nPoints = Math.min(nPeaks, 3);
+            SyntheticEvents.fillPeaks(layer, new Random(1000 * nPeaks + e), nPoints, nPeaks - nPoints);
+
+            // Use the width of a single PCAL strip peak
+            for (ECView view : layer.getViewList())
+                for (ECFitPeak peak : view.getPeakList())
+                    peak.setWidth(SyntheticEvents.EDGE_LENGTH / 108 / Math.sqrt(12.0));
+        }
+
+        ECHitMaps map = new ECHitMaps();
+
+        long triples = (long) nPeaks * nPeaks * nPeaks * EVENTS;
+        int  repeat  = (int) Math.max(20, 20000000 / triples);
+
+        int nHits    = 0;
+        int nEmpty = 0;
+        for (int e = 0; e < EVENTS; e++) {
+            int n = compare(sectors[e], map);
+            nHits += n;
+            if (n == 0) nEmpty++;
+        }
+
+        for (int r = 0; r < ROUNDS; r++) {
+            long allTime    = time(sectors, map, false, repeat);
+            long prunedTime = time(sectors, map, true, repeat);
+
+            if (print && r == ROUNDS - 1)
+                System.out.printf("%2d peaks/view: all %8.1f ns/layer, pruned %8.1f ns/layer (%d hits, %d events without hits)%n",
+                                  nPeaks,
+                                  (double) allTime / (EVENTS * repeat),
+                                  (double) prunedTime / (EVENTS * repeat),
+                                  nHits, nEmpty);
+        }
+    }
+
+
+    private static long time(ECSector[] sectors, ECHitMaps map, boolean pruned, int repeat)
+    {
+        ECHitsFinder[] finders = new ECHitsFinder[sectors.length];
+        for (int e = 0; e < sectors.length; e++) {
+            finders[e] = new ECHitsFinder(sectors[e], map);
+            finders[e].setPrunedSearch(pruned);
+        }
+
+        long start = System.nanoTime();
+        for (int n = 0; n < repeat; n++) {
+            for (int e = 0; e < sectors.length; e++)
+                search(finders[e], sectors[e].getLayer(ECLayerName.INNER), map);
+        }
+        return System.nanoTime() - start;
+    }
+
+
+    private static int compare(ECSector sector, ECHitMaps map)
+    {
+        ECLayer layer = sector.getLayer(ECLayerName.INNER);
+
+        ECHitsFinder finder = new ECHitsFinder(sector, map);
+        finder.setPrunedSearch(false);
+        search(finder, layer, map);
+        ECFitHit[] all = layer.getHitList().toArray(new ECFitHit[0]);
+
+        finder.setPrunedSearch(true);
+        search(finder, layer, map);
+        ECFitHit[] pruned = layer.getHitList().toArray(new ECFitHit[0]);
+
+        if (all.length != pruned.length)
+            throw new IllegalStateException("Different number of hits");
+        for (int n = 0; n < all.length; n++) {
+            if (all[n].getPeakHit(ECViewLabel.U).getPeak() != pruned[n].getPeakHit(ECViewLabel.U).getPeak()
+                    || all[n].getPeakHit(ECViewLabel.V).getPeak() != pruned[n].getPeakHit(ECViewLabel.V).getPeak()
+                    || all[n].getPeakHit(ECViewLabel.W).getPeak() != pruned[n].getPeakHit(ECViewLabel.W).getPeak()
+                    || Double.doubleToLongBits(all[n].getCh2()) != Double.doubleToLongBits(pruned[n].getCh2()))
+                throw new IllegalStateException("Different hit " + n);
+        }
+        return all.length;
+    }
+
+
+    private static void search(ECHitsFinder finder, ECLayer layer, ECHitMaps map)
+    {
+        layer.clearHitList();
+        map.clearHitLists();
+        finder.initializePeakStatus(layer);
+        finder.findHits(layer);
+    }
+}
@@ -0,0 +1,261 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECGeneral;
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECStrip;
+import org.ec.detector.ECView;
+import org.ec.detector.ECViewLabel;
+import org.ec.fit.ECFitHit;
+import org.ec.fit.ECFitPeak;
+
+/**
+ * Helpers to build synthetic data for the tests and benchmarks.
+ */
+public class SyntheticEvents
+{
+    public static final double EDGE_LENGTH = 400.0;
+
+
+    /**
+     * One measurement of a benchmark.
+     */
+    public interface Pass
+    {
+        /**
+         * Run the measurement.
+         *
+         * @param print  false in the first pass, that only warms up the JIT
+         */
+        void run(boolean print);
+    }
+
+
+    /**
+     * Run the measurement twice, the first time only to warm up the JIT.
+     */
+    public static void warmUpAndRun(Pass pass)
+    {
+        pass.run(false);
+        pass.run(true);
+    }
+
+
+    /**
+     * Set the same equilateral geometry for all the layers of the sector.
+     */
+    public static void setGeometry(ECSector sector)
+    {
+        double h = EDGE_LENGTH * Math.sqrt(3) / 2;
+        for (ECLayer layer : sector.getLayerList()) {
+            for (ECView view : layer.getViewList())
+                view.setLength(EDGE_LENGTH);
+            layer.setH(h);
+            layer.setH2(h / 3);
+            layer.setH1(h - h / 3);
+            layer.setDepth(10.0 * (layer.getName().ordinal() + 1));
+        }
+    }
+
+
+    /**
+     * Create <code>nPoints</code> peaks in each view of the layer that
+     * correspond to real points, plus <code>nNoise</code> random peaks.
+     */
+    public static void fillPeaks(ECLayer layer, Random r, int nPoints, int nNoise)
+    {
+        ECView u = layer.getView(ECViewLabel.U);
+        ECView v = layer.getView(ECViewLabel.V);
+        ECView w = layer.getView(ECViewLabel.W);
+
+        double width = 2 * EDGE_LENGTH / 108;
+
+        for (int n = 0; n < nPoints; n++) {
+            // Random barycentric coordinates, the Dalitz sum is 2
+            double a = r.nextDouble();
+            double b = r.nextDouble();
+            if (a + b > 1) {
+                a = 1 - a;
+                b = 1 - b;
+            }
+            double c = 1 - a - b;
+
+            setPeak(u.newPeak(), (1 - a) * EDGE_LENGTH, width, r);
+            setPeak(v.newPeak(), (1 - b) * EDGE_LENGTH, width, r);
+            setPeak(w.newPeak(), (1 - c) * EDGE_LENGTH, width, r);
+        }
+
+        for (int n = 0; n < nNoise; n++) {
+            setPeak(u.newPeak(), r.nextDouble() * EDGE_LENGTH, width, r);
+            setPeak(v.newPeak(), r.nextDouble() * EDGE_LENGTH, width, r);
+            setPeak(w.newPeak(), r.nextDouble() * EDGE_LENGTH, width, r);
+        }
+    }
+
+
+    private static void setPeak(ECFitPeak peak, double dist, double width, Random r)
+    {
+        peak.setDist(dist + 0.2 * width * r.nextGaussian());
+        peak.setWidth(width);
+        peak.setEnergy(0.01 + 0.1 * r.nextDouble());
+    }
+
+
+    /**
+     * Fill the strips of all the views of the sector with
+     * <code>nClusters</code> groups of one to three adjacent strips per
+     * view.  The strips are added in increasing ID order.
+     */
+    public static void fillStrips(ECSector sector, Random r, int nClusters)
+    {
+        for (ECLayer layer : sector.getLayerList()) {
+            int maxStrips = layer.getMaxStrips() > 0 ? layer.getMaxStrips() : 36;
+            for (ECView view : layer.getViewList()) {
+                int step = Math.max(4, (maxStrips - 1) / Math.max(1, nClusters));
+                for (int first = 1; first + 3 < maxStrips && view.getNStrips() < 3 * nClusters; first += step) {
+                    int size = 1 + r.nextInt(3);
+                    for (int id = first; id < first + size; id++) {
+                        ECStrip strip = view.newStrip(id);
+                        strip.setEnergy(0.005 + 0.05 * r.nextDouble());
+                        strip.setTime(10 + r.nextDouble());
+                        strip.setRawAdcs(100 + 1000 * r.nextDouble());
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Fill the strips of all the views of the sector with the showers of
+     * <code>nPoints</code> random points, the same points in all the layers.
+     * Each shower fires three adjacent strips per view, so the service
+     * chain finds hits in them.  The number of strips of each layer is the
+     * one used by <code>HitsFinderService</code>.
+     */
+    public static void fillPoints(ECSector sector, Random r, int nPoints)
+    {
+        double[][] dist = new double[nPoints][3];
+        for (int n = 0; n < nPoints; n++) {
+            // Random barycentric coordinates, the Dalitz sum is 2
+            double a = r.nextDouble();
+            double b = r.nextDouble();
+            if (a + b > 1) {
+                a = 1 - a;
+                b = 1 - b;
+            }
+            dist[n][0] = (1 - a) * EDGE_LENGTH;
+            dist[n][1] = (1 - b) * EDGE_LENGTH;
+            dist[n][2] = (a + b) * EDGE_LENGTH;
+        }
+
+        for (ECLayer layer : sector.getLayerList()) {
+            int maxStrips = layer.getName() == ECLayerName.COVER ? ECGeneral.MAX_EC_STRIPS
+                                                                  : ECGeneral.MAX_PCAL_STRIPS;
+            double width = EDGE_LENGTH / maxStrips;
+            for (ECView view : layer.getViewList()) {
+                for (int n = 0; n < nPoints; n++) {
+                    int center = (int) (dist[n][view.getLabel().ordinal()] / width) + 1;
+                    double energy = 0.02 + 0.1 * r.nextDouble();
+                    for (int id = center - 1; id <= center + 1; id++) {
+                        ECStrip strip = view.newStrip(Math.max(1, Math.min(id, maxStrips - 1)));
+                        double e = id == center ? energy : 0.3 * energy;
+                        strip.setEnergy(strip.getEnergy() + e);
+                        strip.setTime(10 + r.nextDouble());
+                        strip.setRawAdcs(strip.getRawAdcs() + e / ECGeneral.DEFAULT_ECH);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Create hits in all the layers of the sector around the same
+     * <code>nPoints</code> random points, as the hits finder leaves them for
+     * the match finder: local and face coordinates with their errors,
+     * energy, time and thickness.  Each layer misses some of the points and
+     * repeats others.  With the depth of the layers left at zero, projecting
+     * the hits to the face keeps their local coordinates.
+     */
+    public static void fillHits(ECSector sector, Random r, int nPoints)
+    {
+        double[] pi = new double[nPoints];
+        double[] pj = new double[nPoints];
+        for (int n = 0; n < nPoints; n++) {
+            pi[n] = EDGE_LENGTH * r.nextDouble();
+            pj[n] = EDGE_LENGTH * r.nextDouble() - EDGE_LENGTH / 2;
+        }
+
+        for (ECLayer layer : sector.getLayerList()) {
+            ECFitPeak u = layer.getView(ECViewLabel.U).newPeak();
+            ECFitPeak v = layer.getView(ECViewLabel.V).newPeak();
+            ECFitPeak w = layer.getView(ECViewLabel.W).newPeak();
+            for (int n = 0; n < nPoints; n++) {
+                int k = r.nextInt(nPoints);
+                if (r.nextDouble() < 0.2)
+                    continue;
+                double di = 1 + 3 * r.nextDouble();
+                double dj = 1 + 3 * r.nextDouble();
+                double i  = pi[k] + 2 * di * r.nextGaussian();
+                double j  = pj[k] + 2 * dj * r.nextGaussian();
+
+                ECFitHit hit = layer.newHit(u, v, w);
+                hit.setLocalCoords(i, j, 0);
+                hit.setLocalErrors(di, dj, 0);
+                hit.setFaceCoords(i, j);
+                hit.setFaceErrors(di, dj);
+                hit.setEnergy(0.1 + r.nextDouble());
+                hit.setTime(10 * r.nextDouble());
+                hit.setThick(10 + r.nextDouble());
+            }
+        }
+    }
+
+
+    /**
+     * Calculate a fingerprint of the results of the services in the
+     * sectors: the peaks of each view with their energy and position, and
+     * the hits of each layer with their energy, time, face coordinates and
+     * their matches in the other layers with the <em>chi<sup>2</sup></em>.
+     * The values are taken bit by bit, so two runs only have the same
+     * fingerprint if the results are exactly the same.
+     */
+    public static long fingerprint(ECSector[] sectors)
+    {
+        long f = 0;
+        for (ECSector sector : sectors) {
+            for (ECLayer layer : sector.getLayerList()) {
+                for (ECView view : layer.getViewList()) {
+                    f = 31 * f + view.getNPeaks();
+                    for (ECFitPeak peak : view.getPeakList()) {
+                        f = 31 * f + bits(peak.getEnergy());
+                        f = 31 * f + bits(peak.getDist());
+                    }
+                }
+                f = 31 * f + layer.getNHits();
+                for (ECFitHit hit : layer.getHitList()) {
+                    f = 31 * f + bits(hit.getEnergy());
+                    f = 31 * f + bits(hit.getTime());
+                    f = 31 * f + bits(hit.getFaceI());
+                    f = 31 * f + bits(hit.getFaceJ());
+                    for (ECLayer other : sector.getLayerList()) {
+                        ECFitHit match = hit.getMatch(other);
+                        f = 31 * f + (match != null ? match.getID() : 0);
+                        f = 31 * f + bits(hit.getC2Match(other));
+                    }
+                }
+            }
+        }
+        return f;
+    }
+
+
+    private static long bits(double value)
+    {
+        return Double.doubleToLongBits(value);
+    }
+}
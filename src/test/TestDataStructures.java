@@ -1,8 +1,12 @@
 package test;
 
+import org.ec.detector.ECEventStore;
 import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
 import org.ec.detector.ECSector;
+import org.ec.detector.ECStrip;
 import org.ec.detector.ECView;
+import org.ec.detector.ECViewLabel;
 
 public class TestDataStructures
 {
@@ -17,5 +21,24 @@ public class TestDataStructures
                 System.out.println("View: " + v.getLabel());
             }
         }
+        
+        // All the sectors of one event share the same store
+        ECEventStore store = new ECEventStore();
+        for (int id = 1; id <= 6; id++) {
+            ECSector sector = new ECSector(id, store);
+            for (ECLayer l : sector.getLayerList()) {
+                for (ECView v : l.getViewList()) {
+                    ECStrip strip = v.newStrip(id);
+                    strip.setEnergy(0.1 * id);
+                    v.addStrip(new ECStrip(id + 1, 0.2 * id));
+                }
+            }
+            for (ECStrip strip : sector.getLayer(ECLayerName.OUTER)
+                                       .getView(ECViewLabel.W)
+                                       .getStripList()) {
+                System.out.println("Sector " + id + " strip " + strip.getID()
+                                   + ": " + strip.getEnergy());
+            }
+        }
     }
 }
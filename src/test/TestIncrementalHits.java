@@ -0,0 +1,177 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECGeneral;
+import org.ec.detector.ECLayer;
+import org.ec.detector.ECLayerName;
+import org.ec.detector.ECSector;
+import org.ec.detector.ECView;
+import org.ec.fit.ECFitHit;
+import org.ec.fit.ECFitPeak;
+import org.ec.fit.ECPeakHit;
+import org.ec.util.ECHitMaps;
+import org.ec.util.ECHitsFinder;
+import org.ec.util.ECPeaksFinder;
+
+/**
+ * Check that the incremental correction loop of {@link ECHitsFinder} gives
+ * exactly the same peaks and hits as clearing all the hits and searching
+ * them again.  The events are synthetic: first peaks without strips, wide
+ * enough to share many hits, and then the strips of real points, where the
+ * peaks are found and corrected from the strips.
+ */
+public class TestIncrementalHits
+{
+    private static final int EVENTS = 2000;
+
+    public static void main(String[] args)
+    {
+        test(false);
+        test(true);
+    }
+
+
+    private static void test(boolean strips)
+    {
+        int nHits    = 0;
+        int nRepeats = 0;
+
+        for (int e = 0; e < EVENTS; e++) {
+            ECSector full        = createEvent(e, strips);
+            ECSector incremental = createEvent(e, strips);
+
+            run(full, false, strips);
+            nRepeats += run(incremental, true, strips);
+
+            for (ECLayer layer : full.getLayerList()) {
+                ECLayer other = incremental.getLayer(layer.getName());
+                compare(layer, other, e);
+                nHits += layer.getNHits();
+            }
+        }
+
+        System.out.printf("%s: %d events, %d hits, %d layers searched again: OK%n",
+                          strips ? "strips" : "peaks", EVENTS, nHits, nRepeats);
+    }
+
+
+    // Wide peaks without strips, so many combinations are points, or the
+    // strips of real points, to find the peaks and correct them from the
+    // strips
+    private static ECSector createEvent(int seed, boolean strips)
+    {
+        Random   r      = new Random(seed);
+        ECSector sector = new ECSector(1);
+        SyntheticEvents.setGeometry(sector);
+
+        if (strips) {
+            for (ECLayer layer : sector.getLayerList()) {
+                if (layer.getName() == ECLayerName.COVER) {
+                    layer.setMaxStrips(ECGeneral.MAX_EC_STRIPS);
+                } else {
+                    layer.setMaxStrips(ECGeneral.MAX_PCAL_STRIPS);
+                }
+            }
+            SyntheticEvents.fillPoints(sector, r, 1 + r.nextInt(10));
+            return sector;
+        }
+
+        for (ECLayer layer : sector.getLayerList()) {
+            SyntheticEvents.fillPeaks(layer, r, 1 + r.nextInt(3), r.nextInt(2));
+            for (ECView view : layer.getViewList())
+                for (ECFitPeak peak : view.getPeakList())
+                    peak.setWidth(peak.getWidth() * (1 + 4 * r.nextDouble()));
+        }
+        return sector;
+    }
+
+
+    // The loop of HitsFinderService, without correcting the hits
+    private static int run(ECSector sector, boolean incremental, boolean strips)
+    {
+        ECHitMaps     maps = new ECHitMaps();
+        ECPeaksFinder stp  = new ECPeaksFinder(sector, maps);
+        ECHitsFinder  pth  = new ECHitsFinder(sector, maps);
+        pth.setIncremental(incremental);
+
+        int nRepeats = 0;
+        for (ECLayer layer : sector.getLayerList()) {
+            maps.clearHitLists();
+            if (strips)
+                stp.findPeaks(layer);
+            pth.initializePeakStatus(layer);
+            int n = 0;
+            while (pth.calculate()) {
+                pth.findHits(layer);
+                if (layer.getNHits() > 0) {
+                    stp.correctPeaks(layer);
+                    pth.correctEnergy(layer);
+                }
+                n++;
+            }
+            if (n > 1) nRepeats++;
+        }
+        return nRepeats;
+    }
+
+
+    private static void compare(ECLayer l1, ECLayer l2, int event)
+    {
+        String where = "event " + event + " layer " + l1.getName();
+
+        for (ECView view : l1.getViewList()) {
+            ECView other = l2.getView(view.getLabel());
+            String in = where + " view " + view.getLabel();
+            check(view.getNPeaks() == other.getNPeaks(), in + ": number of peaks");
+
+            ECFitPeak[] p1 = view.getPeakList().toArray(new ECFitPeak[0]);
+            ECFitPeak[] p2 = other.getPeakList().toArray(new ECFitPeak[0]);
+            for (int n = 0; n < p1.length; n++) {
+                String peak = in + " peak " + n;
+                check(p1[n].getID() == p2[n].getID(), peak + ": ID");
+                check(same(p1[n].getEnergy(), p2[n].getEnergy()), peak + ": energy");
+                check(same(p1[n].getDist(), p2[n].getDist()), peak + ": dist");
+                check(same(p1[n].getWidth(), p2[n].getWidth()), peak + ": width");
+            }
+        }
+
+        check(l1.getNHits() == l2.getNHits(), where + ": number of hits");
+
+        ECFitHit[] h1 = l1.getHitList().toArray(new ECFitHit[0]);
+        ECFitHit[] h2 = l2.getHitList().toArray(new ECFitHit[0]);
+        for (int n = 0; n < h1.length; n++) {
+            String hit = where + " hit " + n;
+            check(h1[n].getID() == h2[n].getID(), hit + ": ID");
+            check(same(h1[n].getCh2(), h2[n].getCh2()), hit + ": chi2");
+            check(same(h1[n].getEnergy(), h2[n].getEnergy()), hit + ": energy");
+
+            ECPeakHit[] p1 = h1[n].getAllPeakHits().toArray(new ECPeakHit[0]);
+            ECPeakHit[] p2 = h2[n].getAllPeakHits().toArray(new ECPeakHit[0]);
+            for (int v = 0; v < p1.length; v++) {
+                String ph = hit + " view " + v;
+                check(p1[v].getPeak().getID() == p2[v].getPeak().getID(), ph + ": peak");
+                check(same(p1[v].getPath(), p2[v].getPath()), ph + ": path");
+                check(same(p1[v].getHitFraction(), p2[v].getHitFraction()), ph + ": fraction");
+                check(same(p1[v].getEnergy(), p2[v].getEnergy()), ph + ": energy");
+                check(same(p1[v].getWidth(), p2[v].getWidth()), ph + ": width");
+                check(same(p1[v].getDist(), p2[v].getDist()), ph + ": dist");
+                for (int m = 2; m <= 4; m++)
+                    check(same(p1[v].getMoment(m), p2[v].getMoment(m)), ph + ": moment " + m);
+            }
+        }
+    }
+
+
+    private static boolean same(double a, double b)
+    {
+        return Double.doubleToRawLongBits(a) == Double.doubleToRawLongBits(b);
+    }
+
+
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+            throw new IllegalStateException("Different result in " + message);
+    }
+}
@@ -0,0 +1,96 @@
+package test;
+
+import java.util.Random;
+
+import org.ec.detector.ECSector;
+import org.ec.services.MatchFinderService;
+import org.ec.util.ECMatchCost;
+import org.ec.util.ECMatchFinder;
+
+/**
+ * Check that the matches, their <em>chi<sup>2</sup></em> and the times of
+ * the hits are exactly the ones of the original code of
+ * {@link ECMatchFinder}, the one with a loop for each pair of layers.  The
+ * fingerprints were recorded with that code, on the same synthetic sectors
+ * with 1 to 60 points.
+ * <p>
+ * The sectors are matched by {@link MatchFinderService}, one at a time and
+ * in one batch, and directly by an {@link ECMatchFinder} with the grid
+ * index always and never used, and without and with each kernel of the
+ * cost matrix.  The finder does not project the hits, so the times are
+ * finite, and every other sector is matched twice to check the hits
+ * already matched.
+ * <p>
+ * The kernel of the Vector API is checked only when it runs with
+ * <code>--add-modules jdk.incubator.vector</code>.
+ */
+public class TestMatchFinder
+{
+    private static final int SECTORS = 300;
+    private static final int POINTS  = 60;
+
+    // Recorded with the original code
+    private static final long SERVICE_FINGERPRINT = -9138860901805179341L;
+    private static final long FINDER_FINGERPRINT  = -5835173107023257839L;
+
+    public static void main(String[] args)
+    {
+        ECSector[] sectors = createSectors();
+        MatchFinderService service = new MatchFinderService();
+        for (ECSector sector : sectors)
+            service.executeService(0, sector);
+        check("service", sectors, SERVICE_FINGERPRINT);
+
+        sectors = createSectors();
+        service.executeService(new int[sectors.length], sectors);
+        check("service batch", sectors, SERVICE_FINGERPRINT);
+
+        ECMatchCost.Kernel vector = ECMatchCost.getVectorKernel();
+        ECMatchCost.Kernel[] kernels = vector != null
+                                     ? new ECMatchCost.Kernel[] { null, ECMatchCost.SCALAR, vector }
+                                     : new ECMatchCost.Kernel[] { null, ECMatchCost.SCALAR };
+        int[] gridMinHits = { 0, ECMatchFinder.GRID_MIN_HITS, Integer.MAX_VALUE };
+        for (ECMatchCost.Kernel kernel : kernels) {
+            for (int minHits : gridMinHits) {
+                sectors = createSectors();
+                for (int s = 0; s < sectors.length; s++) {
+                    ECMatchFinder finder = new ECMatchFinder(sectors[s]);
+                    finder.setMatrixKernel(kernel);
+                    finder.setGridMinHits(minHits);
+                    finder.matchInnerLayer();
+                    finder.matchOuterLayer();
+                    if (s % 2 == 0) {
+                        finder.matchInnerLayer();
+                        finder.matchOuterLayer();
+                    }
+                }
+                check("finder, " + (kernel == null ? "no" : kernel == vector ? "vector" : "scalar")
+                      + " matrix, grid from " + minHits + " hits", sectors, FINDER_FINGERPRINT);
+            }
+        }
+
+        System.out.printf("%d sectors, %s: OK%n", SECTORS,
+                          vector != null ? "vector kernel checked" : "no vector kernel");
+    }
+
+
+    private static ECSector[] createSectors()
+    {
+        ECSector[] sectors = new ECSector[SECTORS];
+        for (int s = 0; s < SECTORS; s++) {
+            Random r = new Random(s);
+            sectors[s] = new ECSector(s % 6 + 1);
+            SyntheticEvents.fillHits(sectors[s], r, 1 + r.nextInt(POINTS));
+        }
+        return sectors;
+    }
+
+
+    private static void check(String name, ECSector[] sectors, long expected)
+    {
+        long found = SyntheticEvents.fingerprint(sectors);
+        if (found != expected)
+            throw new IllegalStateException("Different matches with the " + name
+                                            + ": fingerprint " + found + ", expected " + expected);
+    }
+}